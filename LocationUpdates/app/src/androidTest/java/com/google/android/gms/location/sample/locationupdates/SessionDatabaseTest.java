@@ -0,0 +1,92 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import android.database.Cursor;
+import android.test.AndroidTestCase;
+
+/**
+ * Batching, retention cleanup and queries of the session database, on an in-memory database.
+ */
+public class SessionDatabaseTest extends AndroidTestCase {
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    private static final long HOUR = 60L * 60 * 1000;
+
+    private SessionDatabase mDatabase;
+    private final SatelliteSnapshot mSnapshot = new SatelliteSnapshot(4);
+    private final FixResult mResult = new FixResult();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mDatabase = new SessionDatabase(getContext(), null);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mDatabase.close();
+        super.tearDown();
+    }
+
+    /**
+     * Fixes stay pending until the batch is full, then come back from the queries oldest first.
+     * Old fixes survive the commit while the prune interval has not passed.
+     */
+    public void testCommitsInBatches() {
+        long now = System.currentTimeMillis();
+        SessionDatabaseWriter writer = new SessionDatabaseWriter(mDatabase, now, DAY, HOUR, 3,
+                HOUR);
+        append(writer, now - 2 * DAY, 30);
+        append(writer, now - 2 * DAY + 1000, 31);
+        assertEquals(2, writer.getPendingFixes());
+        append(writer, now - 2 * DAY + 2000, 32);
+        assertEquals(0, writer.getPendingFixes());
+        writer.close();
+
+        Cursor snr = mDatabase.querySnrHistory(5, 0, now);
+        try {
+            assertEquals(3, snr.getCount());
+            for (int i = 0; i < 3; i++) {
+                assertTrue(snr.moveToNext());
+                assertEquals(now - 2 * DAY + i * 1000, snr.getLong(0));
+                assertEquals(30f + i, snr.getFloat(1), 1e-6);
+            }
+        } finally {
+            snr.close();
+        }
+        assertCount(0, mDatabase.querySnrHistory(7, 0, now));
+        assertCount(3, mDatabase.queryFixes(0, now));
+        // The verdict did not change between the fixes.
+        assertCount(1, mDatabase.queryVerdicts(0, now));
+    }
+
+    /**
+     * With a zero prune interval, every commit deletes the fixes past the retention period.
+     */
+    public void testPrunesOnCommit() {
+        long now = System.currentTimeMillis();
+        SessionDatabaseWriter writer = new SessionDatabaseWriter(mDatabase, now, DAY, 0, 1,
+                HOUR);
+        append(writer, now - 2 * DAY, 30);
+        append(writer, now, 31);
+        writer.close();
+
+        assertCount(1, mDatabase.querySnrHistory(5, 0, now + 1));
+        assertCount(1, mDatabase.queryFixes(0, now + 1));
+        assertCount(0, mDatabase.queryFixes(0, now));
+    }
+
+    private void append(SessionDatabaseWriter writer, long timestamp, float snr) {
+        mSnapshot.clear(timestamp);
+        mSnapshot.add(5, snr, 45, 90, true);
+        mResult.verdict = SpoofStateMachine.STATE_NORMAL;
+        writer.append(mSnapshot, mResult);
+    }
+
+    private static void assertCount(int expected, Cursor cursor) {
+        try {
+            assertEquals(expected, cursor.getCount());
+        } finally {
+            cursor.close();
+        }
+    }
+}
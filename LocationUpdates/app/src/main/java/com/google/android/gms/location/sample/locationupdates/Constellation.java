@@ -0,0 +1,134 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+/**
+ * Satellite constellations and the compact satellite keys used to index per-satellite arrays.
+ *
+ * {@code GpsStatus} reports every satellite with a single PRN number: GPS 1-32, SBAS 33-64
+ * (PRN 120-151), GLONASS 65-96, QZSS 193-200, BeiDou 201-263 and Galileo 301-336. A key packs
+ * those ranges back to back, so each constellation owns one contiguous block of a per-satellite
+ * array and no slots are spent on the gaps. Key 0 means no known constellation, and GPS keys are
+ * equal to GPS PRNs. Has no Android dependencies.
+ */
+public final class Constellation {
+
+    public static final int UNKNOWN = -1;
+    public static final int GPS = 0;
+    public static final int SBAS = 1;
+    public static final int GLONASS = 2;
+    public static final int QZSS = 3;
+    public static final int BEIDOU = 4;
+    public static final int GALILEO = 5;
+    public static final int COUNT = 6;
+
+    /** First and last PRN of each constellation, in {@code GpsStatus} numbering. */
+    private static final int[] FIRST_PRN = { 1, 33, 65, 193, 201, 301 };
+    private static final int[] LAST_PRN = { 32, 64, 96, 200, 263, 336 };
+
+    /** Offset from a constellation's own satellite ID to its {@code GpsStatus} PRN. */
+    private static final int[] PRN_OFFSET = { 0, -87, 0, 0, 200, 300 };
+
+    private static final char[] LETTERS = { 'G', 'S', 'R', 'J', 'C', 'E' };
+    private static final String[] NAMES = { "GPS", "SBAS", "GLONASS", "QZSS", "BeiDou", "Galileo" };
+
+    private static final int[] FIRST_KEY = new int[COUNT + 1];
+
+    static {
+        FIRST_KEY[0] = 1;
+        for (int c = 0; c < COUNT; c++) {
+            FIRST_KEY[c + 1] = FIRST_KEY[c] + LAST_PRN[c] - FIRST_PRN[c] + 1;
+        }
+    }
+
+    /** Highest satellite key; arrays indexed by key need {@code MAX_KEY + 1} slots. */
+    public static final int MAX_KEY = FIRST_KEY[COUNT] - 1;
+
+    private Constellation() {
+    }
+
+    /**
+     * Constellation of a {@code GpsStatus} PRN, or {@link #UNKNOWN}.
+     */
+    public static int of(int prn) {
+        for (int c = 0; c < COUNT; c++) {
+            if (prn >= FIRST_PRN[c] && prn <= LAST_PRN[c]) {
+                return c;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Key of a {@code GpsStatus} PRN, or 0 if it belongs to no known constellation.
+     */
+    public static int key(int prn) {
+        int c = of(prn);
+        return c == UNKNOWN ? 0 : FIRST_KEY[c] + prn - FIRST_PRN[c];
+    }
+
+    /**
+     * {@code GpsStatus} PRN of a satellite given by its constellation and its ID within that
+     * constellation (e.g. PRN 120 for SBAS, slot number for GLONASS, as in NMEA 4.10 and
+     * {@code GnssStatus}), or 0 if the ID is out of range.
+     */
+    public static int prn(int constellation, int svid) {
+        if (constellation < 0 || constellation >= COUNT) {
+            return 0;
+        }
+        int prn = svid + PRN_OFFSET[constellation];
+        if (constellation == GLONASS && svid < FIRST_PRN[GLONASS]) {
+            // GLONASS slots 1-24 are reported as 65-88.
+            prn += FIRST_PRN[GLONASS] - 1;
+        }
+        return prn >= FIRST_PRN[constellation] && prn <= LAST_PRN[constellation] ? prn : 0;
+    }
+
+    /**
+     * Constellation of a key, or {@link #UNKNOWN} for key 0 or keys out of range.
+     */
+    public static int ofKey(int key) {
+        for (int c = 0; c < COUNT; c++) {
+            if (key >= FIRST_KEY[c] && key < FIRST_KEY[c + 1]) {
+                return c;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * {@code GpsStatus} PRN of a key, or 0.
+     */
+    public static int prnOfKey(int key) {
+        int c = ofKey(key);
+        return c == UNKNOWN ? 0 : FIRST_PRN[c] + key - FIRST_KEY[c];
+    }
+
+    /**
+     * ID of a key's satellite within its constellation, the number shown next to its letter.
+     */
+    public static int svidOfKey(int key) {
+        int c = ofKey(key);
+        if (c == UNKNOWN) {
+            return 0;
+        }
+        int prn = FIRST_PRN[c] + key - FIRST_KEY[c];
+        return c == GLONASS ? prn - FIRST_PRN[GLONASS] + 1 : prn - PRN_OFFSET[c];
+    }
+
+    /**
+     * First key of a constellation; its keys run up to {@code firstKey(c + 1) - 1}.
+     */
+    public static int firstKey(int constellation) {
+        return FIRST_KEY[constellation];
+    }
+
+    /**
+     * RINEX letter of a constellation, e.g. G for GPS and R for GLONASS.
+     */
+    public static char getLetter(int constellation) {
+        return constellation >= 0 && constellation < COUNT ? LETTERS[constellation] : '?';
+    }
+
+    public static String getName(int constellation) {
+        return constellation >= 0 && constellation < COUNT ? NAMES[constellation] : "unknown";
+    }
+}
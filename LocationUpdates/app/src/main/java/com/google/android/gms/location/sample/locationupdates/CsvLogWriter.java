@@ -0,0 +1,225 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background CSV log.
+ *
+ * Lines are handed over through a bounded queue and written by a dedicated thread that keeps one
+ * buffered stream open on the current segment of a {@link SegmentedLog}. The buffer is flushed
+ * once enough bytes are pending or the flush interval has passed, whichever comes first, so
+ * callers never touch storage. The segment is rotated between lines once it is large or old
+ * enough; the first segment is only opened when the first line arrives. Write failures are
+ * reported through the error listener of the log; the failed segment is closed and the next line
+ * goes to a new one, so a failure costs the lines still in the buffer but does not stop the
+ * writer.
+ */
+public class CsvLogWriter {
+
+    private static final String TAG = "CsvLogWriter";
+
+    /**
+     * Marks the end of the queue. Compared by identity.
+     */
+    private static final String END_OF_LOG = new String("");
+
+    private static final int QUEUE_CAPACITY = 1024;
+
+    private static final long CLOSE_TIMEOUT_MILLIS = 2000;
+
+    private final SegmentedLog mLog;
+    private final int mFlushBytes;
+    private final long mFlushIntervalMillis;
+    private final BlockingQueue<String> mQueue = new ArrayBlockingQueue<String>(QUEUE_CAPACITY);
+    private final Thread mThread;
+
+    private volatile int mDroppedLines = 0;
+
+    // Only touched on the writer thread.
+    private Writer mOut;
+    private long mSegmentStart;
+    private long mSegmentBytes;
+    private long mLastLineTime;
+
+    /**
+     * @param log                 segments the lines are written to
+     * @param flushBytes          pending byte count that forces a flush
+     * @param flushIntervalMillis longest time a written line may stay in the buffer
+     */
+    public CsvLogWriter(SegmentedLog log, int flushBytes, long flushIntervalMillis) {
+        mLog = log;
+        mFlushBytes = flushBytes;
+        mFlushIntervalMillis = flushIntervalMillis;
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, TAG);
+        mThread.setDaemon(true);
+    }
+
+    /**
+     * Starts the writer thread. Segments are opened on that thread, not the caller's.
+     */
+    public void start() {
+        mThread.start();
+    }
+
+    /**
+     * Queues one line without blocking. The line must carry its own line separator. Returns false
+     * and counts the line as dropped if the queue is full.
+     */
+    public boolean write(String line) {
+        if (mQueue.offer(line)) {
+            return true;
+        }
+        mDroppedLines++;
+        return false;
+    }
+
+    /**
+     * Formats the line logged for every fix, {@code cv,h:m:s}, reusing {@code line} as scratch.
+     */
+    public static String formatCoefficientOfVariation(StringBuilder line,
+            double coefficientOfVariation, int hour, int minute, int second) {
+        line.setLength(0);
+        line.append(coefficientOfVariation).append(',')
+                .append(hour).append(':').append(minute).append(':').append(second)
+                .append('\n');
+        return line.toString();
+    }
+
+    /**
+     * Number of lines dropped because the writer thread could not keep up.
+     */
+    public int getDroppedLines() {
+        return mDroppedLines;
+    }
+
+    /**
+     * Writes out everything queued so far, closes the segment and waits for the writer thread to
+     * finish. Gives up on the queued lines if the writer thread does not take the end marker
+     * within a couple of seconds.
+     */
+    public void close() {
+        try {
+            if (!mQueue.offer(END_OF_LOG, CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                mThread.interrupt();
+            }
+            mThread.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        try {
+            ArrayList<String> batch = new ArrayList<String>(QUEUE_CAPACITY);
+            int pendingBytes = 0;
+            long flushDeadline = 0;
+            boolean open = true;
+            while (open) {
+                long now = System.currentTimeMillis();
+                String line;
+                if (pendingBytes == 0) {
+                    line = mQueue.take();
+                } else {
+                    line = mQueue.poll(Math.max(0, flushDeadline - now), TimeUnit.MILLISECONDS);
+                }
+                if (line != null) {
+                    batch.add(line);
+                    mQueue.drainTo(batch);
+                }
+                for (int i = 0; i < batch.size(); i++) {
+                    String next = batch.get(i);
+                    if (next == END_OF_LOG) {
+                        open = false;
+                        break;
+                    }
+                    long lineTime = System.currentTimeMillis();
+                    try {
+                        if (mOut != null
+                                && mLog.isRotationDue(mSegmentStart, mSegmentBytes, lineTime)) {
+                            pendingBytes = 0;
+                            closeSegment();
+                        }
+                        if (mOut == null) {
+                            openSegment(lineTime);
+                        }
+                        if (pendingBytes == 0) {
+                            flushDeadline = lineTime + mFlushIntervalMillis;
+                        }
+                        mLastLineTime = lineTime;
+                        mOut.write(next);
+                        pendingBytes += next.length();
+                        mSegmentBytes += next.length();
+                    } catch (IOException e) {
+                        mLog.reportError("Could not write CSV log", e);
+                        pendingBytes = 0;
+                        closeSegment();
+                    }
+                }
+                batch.clear();
+                if (pendingBytes > 0 && (!open || pendingBytes >= mFlushBytes
+                        || System.currentTimeMillis() >= flushDeadline)) {
+                    pendingBytes = 0;
+                    try {
+                        mOut.flush();
+                    } catch (IOException e) {
+                        mLog.reportError("Could not flush CSV log", e);
+                        closeSegment();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeSegment();
+        }
+    }
+
+    /**
+     * Opens a new segment for lines from {@code start} on. If the segment cannot be written, it
+     * is closed again right away.
+     */
+    private void openSegment(long start) throws IOException {
+        File file = mLog.openSegment(start);
+        try {
+            mOut = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        } catch (IOException e) {
+            mLog.closeSegment(start);
+            throw e;
+        }
+        mSegmentStart = start;
+        mSegmentBytes = 0;
+    }
+
+    /**
+     * Closes the open segment, if any. A failure to write out its last lines is reported, and
+     * the segment is closed in the log all the same, so that the next line starts a new one.
+     */
+    private void closeSegment() {
+        Writer out = mOut;
+        if (out == null) {
+            return;
+        }
+        mOut = null;
+        try {
+            out.close();
+        } catch (IOException e) {
+            mLog.reportError("Could not close CSV log", e);
+        } finally {
+            mLog.closeSegment(mLastLineTime);
+        }
+    }
+}
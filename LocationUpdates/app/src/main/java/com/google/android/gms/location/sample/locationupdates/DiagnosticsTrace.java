@@ -0,0 +1,135 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import java.io.PrintWriter;
+
+/**
+ * Level-gated diagnostics trace for hot paths.
+ *
+ * Events are fixed-size records (event id, one int and two float arguments) written into
+ * preallocated ring buffers, so recording never builds strings or allocates. Nothing is recorded
+ * unless the level allows it, and with {@link #ENABLED} set to false every call reduces to a
+ * constant-false branch that the compiler and JIT remove. The buffered events are only turned into
+ * text when {@link #dump(PrintWriter)} is called, e.g. from {@code adb shell dumpsys activity}.
+ */
+public final class DiagnosticsTrace {
+
+    /**
+     * Compile-time switch for the whole trace.
+     */
+    public static final boolean ENABLED = true;
+
+    public static final int LEVEL_OFF = 0;
+    public static final int LEVEL_INFO = 1;
+    public static final int LEVEL_VERBOSE = 2;
+
+    /** A satellite was sampled. arg: Constellation key, a: SNR. */
+    public static final int EVENT_SATELLITE = 0;
+    /** A satellite of no known constellation was skipped. arg: PRN. */
+    public static final int EVENT_OTHER_SATELLITE = 1;
+    /**
+     * Statistics of one fix. arg: GPS satellite count, a: mean SNR, b: coefficient of variation.
+     */
+    public static final int EVENT_STATISTICS = 2;
+    /** Detector state after one fix. arg: state, a: suspicious fixes in window, b: spoof score. */
+    public static final int EVENT_DETECTOR = 3;
+    /** A line was queued for the CSV log. a: coefficient of variation. */
+    public static final int EVENT_CSV_LINE = 4;
+    /** The sky plot skipped a satellite of no known constellation. arg: PRN. */
+    public static final int EVENT_UNKNOWN_DRAWN = 5;
+    /** The UI was refreshed on a frame. arg: dirty flags, a: frames dropped, b: lateness in ms. */
+    public static final int EVENT_FRAME = 6;
+    /** A startup milestone was reached. arg: StartupTrace mark, a: ms since onCreate. */
+    public static final int EVENT_STARTUP = 7;
+
+    private static final String[] EVENT_NAMES = {
+            "satellite", "other-satellite", "statistics", "detector", "csv-line", "unknown-drawn",
+            "frame", "startup"
+    };
+
+    /**
+     * Number of events kept. Must be a power of two.
+     */
+    private static final int CAPACITY = 1024;
+
+    private static final Object sLock = new Object();
+    private static final long[] sTimes = new long[CAPACITY];
+    private static final int[] sEvents = new int[CAPACITY];
+    private static final int[] sArgs = new int[CAPACITY];
+    private static final float[] sValuesA = new float[CAPACITY];
+    private static final float[] sValuesB = new float[CAPACITY];
+
+    private static volatile int sLevel = LEVEL_OFF;
+    private static long sRecorded = 0;
+
+    private DiagnosticsTrace() {
+    }
+
+    public static void setLevel(int level) {
+        sLevel = level;
+    }
+
+    public static int getLevel() {
+        return sLevel;
+    }
+
+    public static boolean isEnabled(int level) {
+        return ENABLED && level <= sLevel;
+    }
+
+    public static void record(int level, int event, int arg) {
+        record(level, event, arg, 0, 0);
+    }
+
+    /**
+     * Records one event if {@code level} is enabled, overwriting the oldest event once the ring
+     * buffer is full.
+     */
+    public static void record(int level, int event, int arg, float a, float b) {
+        if (!ENABLED || level > sLevel) {
+            return;
+        }
+        long now = System.nanoTime();
+        synchronized (sLock) {
+            int slot = (int) (sRecorded & (CAPACITY - 1));
+            sTimes[slot] = now;
+            sEvents[slot] = event;
+            sArgs[slot] = arg;
+            sValuesA[slot] = a;
+            sValuesB[slot] = b;
+            sRecorded++;
+        }
+    }
+
+    /**
+     * Forgets every recorded event.
+     */
+    public static void clear() {
+        synchronized (sLock) {
+            sRecorded = 0;
+        }
+    }
+
+    /**
+     * Writes the buffered events, oldest first, one per line.
+     */
+    public static void dump(PrintWriter out) {
+        synchronized (sLock) {
+            long first = Math.max(0, sRecorded - CAPACITY);
+            out.println("DiagnosticsTrace: level " + sLevel + ", " + sRecorded + " events, "
+                    + (sRecorded - first) + " buffered");
+            for (long i = first; i < sRecorded; i++) {
+                int slot = (int) (i & (CAPACITY - 1));
+                out.print(sTimes[slot] / 1000000);
+                out.print(' ');
+                out.print(EVENT_NAMES[sEvents[slot]]);
+                out.print(' ');
+                out.print(sArgs[slot]);
+                out.print(' ');
+                out.print(sValuesA[slot]);
+                out.print(' ');
+                out.println(sValuesB[slot]);
+            }
+        }
+        out.flush();
+    }
+}
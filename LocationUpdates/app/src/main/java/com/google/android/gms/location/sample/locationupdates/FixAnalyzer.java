@@ -0,0 +1,141 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+/**
+ * Spoof analysis of a stream of fixes.
+ *
+ * Holds the SNR history and detector and turns each {@link SatelliteSnapshot} into a
+ * {@link FixResult}. Every satellite of a known {@link Constellation} feeds the history, and SNR
+ * statistics are kept per constellation; the coefficient of variation checked by the detector is
+ * the one of GPS, whose thresholds it was tuned on. A fix is suspicious when its coefficient of
+ * variation falls in the detector's band and the {@link SpoofFeatureScorer} backs it up, or when
+ * the score alone is high; a CV in the band by itself is common on genuine skies and no longer
+ * enough. The SNR history is fed by the fixes and gives the scorer the SNR jitter of every
+ * satellite. Has no Android dependencies and must only be used from one thread.
+ */
+public class FixAnalyzer {
+
+    static final String MESSAGE_ORIGINAL = "Your location is original!";
+    static final String MESSAGE_WARNING = "Warning: Your location might be fake!";
+    static final String MESSAGE_SPOOFED = "Alert: Your location is being spoofed!";
+
+    /**
+     * Fewest GPS satellites a fix needs for its coefficient of variation to reach the detector.
+     */
+    static final int MIN_SATELLITES = 3;
+
+    /**
+     * Spoof score that confirms a coefficient of variation in the suspicious band, and score that
+     * makes a fix suspicious on its own.
+     */
+    static final float CONFIRMING_SCORE = 0.4f;
+    static final float CONCLUSIVE_SCORE = 0.8f;
+
+    private static final int MAX_SATELLITES_PER_CONSTELLATION = 64;
+
+    private final SnrStatistics[] mStatistics = new SnrStatistics[Constellation.COUNT];
+    private final SnrStatistics mSnrStatistics;
+    private final SnrHistory mSnrHistory;
+
+    private final SpoofStateMachine mDetector =
+            new SpoofStateMachine(SpoofStateMachine.DEFAULT_WINDOW_SIZE);
+    private final SpoofFeatureScorer mScorer;
+
+    /**
+     * @param historySize number of recent SNR samples kept per satellite
+     */
+    public FixAnalyzer(int historySize) {
+        for (int c = 0; c < Constellation.COUNT; c++) {
+            mStatistics[c] = new SnrStatistics();
+        }
+        mSnrStatistics = mStatistics[Constellation.GPS];
+        mSnrHistory = new SnrHistory(Constellation.MAX_KEY, historySize);
+        mScorer = new SpoofFeatureScorer(MAX_SATELLITES_PER_CONSTELLATION);
+    }
+
+    /**
+     * Adds the accuracy, in m, of a new location taken at {@code timestamp}, in ms since the
+     * epoch, to the accuracy trend scored with the following fixes.
+     */
+    public void addLocation(long timestamp, float accuracy) {
+        mScorer.addAccuracy(timestamp, accuracy);
+    }
+
+    /**
+     * Processes one fix and writes the outcome into {@code result}.
+     */
+    public void analyze(SatelliteSnapshot snapshot, FixResult result) {
+        for (int c = 0; c < Constellation.COUNT; c++) {
+            mStatistics[c].reset();
+        }
+        int count = snapshot.getCount();
+        for (int i = 0; i < count; i++) {
+            int constellation = snapshot.getConstellation(i);
+            if (constellation != Constellation.UNKNOWN) {
+                int key = snapshot.getKey(i);
+                float snr = snapshot.getSnr(i);
+                mSnrHistory.add(key, snr);
+                mStatistics[constellation].add(snr);
+                DiagnosticsTrace.record(DiagnosticsTrace.LEVEL_VERBOSE,
+                        DiagnosticsTrace.EVENT_SATELLITE, key, snr, 0);
+            } else {
+                DiagnosticsTrace.record(DiagnosticsTrace.LEVEL_VERBOSE,
+                        DiagnosticsTrace.EVENT_OTHER_SATELLITE, snapshot.getPrn(i));
+            }
+        }
+
+        double coefficientOfVariation = mSnrStatistics.getCoefficientOfVariation();
+        DiagnosticsTrace.record(DiagnosticsTrace.LEVEL_INFO, DiagnosticsTrace.EVENT_STATISTICS,
+                mSnrStatistics.getCount(), (float) mSnrStatistics.getMean(),
+                (float) coefficientOfVariation);
+
+        result.timestamp = snapshot.getTimestamp();
+        result.satellitesInView = count;
+        result.satellitesUsed = snapshot.getUsedCount();
+        result.mean = mSnrStatistics.getMean();
+        result.standardDeviation = mSnrStatistics.getStandardDeviation();
+        result.coefficientOfVariation = coefficientOfVariation;
+        result.message = null;
+
+        float score = mScorer.score(snapshot, mSnrHistory);
+        result.spoofScore = score;
+        result.snrElevationCorrelation = mScorer.getCorrelation(Constellation.GPS);
+        for (int c = 0; c < Constellation.COUNT; c++) {
+            result.constellationSatellites[c] = mStatistics[c].getCount();
+            result.constellationMean[c] = mStatistics[c].getMean();
+            result.constellationCoefficientOfVariation[c] =
+                    mStatistics[c].getCoefficientOfVariation();
+            result.constellationSkyScore[c] = mScorer.getSkyScore(c);
+        }
+        result.constellationContrast = mScorer.getContrast();
+
+        int previous = mDetector.getState();
+        int state = previous;
+        if (mSnrStatistics.getCount() >= MIN_SATELLITES) {
+            boolean suspicious = mDetector.isSuspicious(coefficientOfVariation)
+                    ? score >= CONFIRMING_SCORE : score >= CONCLUSIVE_SCORE;
+            state = mDetector.update(suspicious);
+        }
+        result.verdict = state;
+        if (state != previous) {
+            result.message = getTransitionMessage(state);
+        }
+        DiagnosticsTrace.record(DiagnosticsTrace.LEVEL_INFO, DiagnosticsTrace.EVENT_DETECTOR,
+                state, mDetector.getSuspiciousCount(), score);
+    }
+
+    /**
+     * Message shown when the detector enters {@code state}, or null if none is.
+     */
+    private static String getTransitionMessage(int state) {
+        switch (state) {
+            case SpoofStateMachine.STATE_NORMAL:
+                return MESSAGE_ORIGINAL;
+            case SpoofStateMachine.STATE_SUSPECT:
+                return MESSAGE_WARNING;
+            case SpoofStateMachine.STATE_SPOOFED:
+                return MESSAGE_SPOOFED;
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import android.database.SQLException;
+import android.location.Location;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+
+/**
+ * Per-fix processing pipeline.
+ *
+ * The main thread captures the satellites of a fix into a pooled {@link Fix} and submits it. A
+ * dedicated {@link HandlerThread} runs the {@link FixAnalyzer}, writes the CSV and binary session
+ * logs and the {@link SessionDatabase}, and posts the resulting {@link FixResult} back to the main
+ * thread, which only has to apply it to the UI. Storage latency therefore never reaches the main
+ * looper. The analyzer itself is built by the first message of the processing thread, so its
+ * classes and SNR history are loaded and allocated while the main thread draws the first frame.
+ */
+public class FixProcessor implements Handler.Callback {
+
+    private static final String TAG = "FixProcessor";
+
+    /**
+     * Number of fixes that can be in flight at once. Fixes submitted while all are busy are
+     * dropped.
+     */
+    private static final int POOL_SIZE = 4;
+
+    private static final int MSG_PROCESS = 1;
+    private static final int MSG_RESULT = 2;
+    private static final int MSG_OPEN_LOGS = 3;
+    private static final int MSG_CLOSE_LOGS = 4;
+    private static final int MSG_QUIT = 5;
+    private static final int MSG_COMMIT_DATABASE = 6;
+    private static final int MSG_CREATE_ANALYZER = 7;
+    private static final int MSG_ANALYZER_READY = 8;
+    private static final int MSG_LOCATION = 9;
+
+    /**
+     * Receives processed fixes on the main thread.
+     */
+    public interface Callback {
+        /**
+         * The analyzer was built; fixes submitted before were queued and are processed next.
+         */
+        void onAnalyzerReady();
+
+        void onFixProcessed(FixResult result);
+    }
+
+    /**
+     * One fix travelling through the pipeline.
+     */
+    public static class Fix {
+        public final SatelliteSnapshot snapshot;
+        final FixResult result = new FixResult();
+
+        Fix(int maxSatellites) {
+            snapshot = new SatelliteSnapshot(maxSatellites);
+        }
+    }
+
+    private final int mHistorySize;
+    private Callback mCallback;
+    private final HandlerThread mThread;
+    private final Handler mMainHandler;
+    private Handler mHandler;
+
+    // Only touched on the main thread.
+    private final ArrayList<Fix> mPool = new ArrayList<Fix>(POOL_SIZE);
+    private int mDroppedFixes = 0;
+    private boolean mLogsOpen = false;
+
+    // Only written on the processing thread, read by getDroppedCsvLines().
+    private volatile CsvLogWriter mCsvLog;
+    private volatile int mClosedCsvDroppedLines = 0;
+
+    // Only touched on the processing thread.
+    private FixAnalyzer mAnalyzer;
+    private SegmentedLog mCsvSegments;
+    private SessionLogWriter mSessionLog;
+    private SessionDatabaseWriter mDatabase;
+    private final Calendar mCalendar = Calendar.getInstance();
+    private final StringBuilder mCsvLine = new StringBuilder(32);
+
+    /**
+     * @param historySize   number of recent SNR samples the analyzer keeps per satellite
+     * @param maxSatellites most satellites captured per fix
+     * @param callback      receives the results on the main thread
+     */
+    public FixProcessor(int historySize, int maxSatellites, Callback callback) {
+        mHistorySize = historySize;
+        mCallback = callback;
+        for (int i = 0; i < POOL_SIZE; i++) {
+            mPool.add(new Fix(maxSatellites));
+        }
+        mThread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        mMainHandler = new Handler(Looper.getMainLooper(), this);
+    }
+
+    /**
+     * Starts the processing thread, which builds the analyzer before anything else.
+     */
+    public void start() {
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper(), this);
+        mHandler.sendEmptyMessage(MSG_CREATE_ANALYZER);
+    }
+
+    /**
+     * Delivers the results to {@code callback} from now on, e.g. to the activity recreated after
+     * a configuration change. Main thread only.
+     */
+    public void setCallback(Callback callback) {
+        mCallback = callback;
+    }
+
+    /**
+     * Returns a free fix to capture satellites into, or null if every pooled fix is still being
+     * processed. Main thread only.
+     */
+    public Fix obtain() {
+        int size = mPool.size();
+        if (size == 0) {
+            mDroppedFixes++;
+            return null;
+        }
+        return mPool.remove(size - 1);
+    }
+
+    /**
+     * Hands a fix obtained from {@link #obtain()} over to the processing thread.
+     */
+    public void submit(Fix fix) {
+        mHandler.obtainMessage(MSG_PROCESS, fix).sendToTarget();
+    }
+
+    /**
+     * Hands a new location over to the processing thread, where its accuracy feeds the accuracy
+     * trend of the spoof score. Locations without accuracy are ignored.
+     */
+    public void submitLocation(Location location) {
+        if (location.hasAccuracy()) {
+            mHandler.obtainMessage(MSG_LOCATION, location).sendToTarget();
+        }
+    }
+
+    /**
+     * Number of fixes dropped because the processing thread fell behind.
+     */
+    public int getDroppedFixes() {
+        return mDroppedFixes;
+    }
+
+    /**
+     * Number of CSV log lines dropped because the log writer fell behind, over all sessions.
+     */
+    public int getDroppedCsvLines() {
+        CsvLogWriter csvLog = mCsvLog;
+        return mClosedCsvDroppedLines + (csvLog != null ? csvLog.getDroppedLines() : 0);
+    }
+
+    /**
+     * Opens the CSV log, a new binary session log and the session database on the processing
+     * thread. The first call also moves {@code legacyCsvFile}, the CSV log written before it was
+     * split into segments, into {@code csvDirectory} if it still exists.
+     */
+    public void openLogs(File csvDirectory, File legacyCsvFile, File sessionFile,
+            SessionDatabase database, long startTime) {
+        mLogsOpen = true;
+        mHandler.obtainMessage(MSG_OPEN_LOGS, new Object[] {
+                csvDirectory, legacyCsvFile, sessionFile, database, startTime
+        }).sendToTarget();
+    }
+
+    /**
+     * Closes the logs once the fixes submitted so far have been written.
+     */
+    public void closeLogs() {
+        mLogsOpen = false;
+        mHandler.sendEmptyMessage(MSG_CLOSE_LOGS);
+    }
+
+    /**
+     * Whether {@link #openLogs} was called more recently than {@link #closeLogs()}. Main thread
+     * only.
+     */
+    public boolean isLogsOpen() {
+        return mLogsOpen;
+    }
+
+    /**
+     * Processes what was submitted so far, closes the logs and stops the processing thread.
+     * Results not yet delivered to the main thread are discarded, including those the processing
+     * thread posts after this call. Main thread only.
+     */
+    public void quit() {
+        mLogsOpen = false;
+        mCallback = null;
+        mHandler.sendEmptyMessage(MSG_QUIT);
+        mMainHandler.removeMessages(MSG_ANALYZER_READY);
+        mMainHandler.removeMessages(MSG_RESULT);
+    }
+
+    @Override
+    public boolean handleMessage(Message msg) {
+        switch (msg.what) {
+            case MSG_CREATE_ANALYZER:
+                mAnalyzer = new FixAnalyzer(mHistorySize);
+                mMainHandler.sendEmptyMessage(MSG_ANALYZER_READY);
+                return true;
+            case MSG_ANALYZER_READY:
+                if (mCallback != null) {
+                    mCallback.onAnalyzerReady();
+                }
+                return true;
+            case MSG_PROCESS:
+                process((Fix) msg.obj);
+                return true;
+            case MSG_RESULT:
+                Fix fix = (Fix) msg.obj;
+                if (mCallback != null) {
+                    mCallback.onFixProcessed(fix.result);
+                }
+                mPool.add(fix);
+                return true;
+            case MSG_LOCATION:
+                Location location = (Location) msg.obj;
+                mAnalyzer.addLocation(location.getTime(), location.getAccuracy());
+                return true;
+            case MSG_OPEN_LOGS:
+                Object[] args = (Object[]) msg.obj;
+                openLogsInternal((File) args[0], (File) args[1], (File) args[2],
+                        (SessionDatabase) args[3], (Long) args[4]);
+                return true;
+            case MSG_COMMIT_DATABASE:
+                if (mDatabase != null) {
+                    try {
+                        mDatabase.commitIfDue();
+                    } catch (SQLException e) {
+                        Log.e(TAG, "Could not commit to session database", e);
+                        closeDatabase();
+                    }
+                }
+                return true;
+            case MSG_CLOSE_LOGS:
+                closeLogsInternal();
+                return true;
+            case MSG_QUIT:
+                closeLogsInternal();
+                if (mCsvSegments != null) {
+                    mCsvSegments.close();
+                }
+                mThread.quit();
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void process(Fix fix) {
+        FixResult result = fix.result;
+        mAnalyzer.analyze(fix.snapshot, result);
+
+        if (mCsvLog != null) {
+            mCalendar.setTimeInMillis(System.currentTimeMillis());
+            String strcov = CsvLogWriter.formatCoefficientOfVariation(mCsvLine,
+                    result.coefficientOfVariation, mCalendar.get(Calendar.HOUR),
+                    mCalendar.get(Calendar.MINUTE), mCalendar.get(Calendar.SECOND));
+            DiagnosticsTrace.record(DiagnosticsTrace.LEVEL_VERBOSE,
+                    DiagnosticsTrace.EVENT_CSV_LINE, 0, (float) result.coefficientOfVariation, 0);
+            mCsvLog.write(strcov);
+        }
+        if (mSessionLog != null) {
+            try {
+                mSessionLog.append(fix.snapshot, (float) result.coefficientOfVariation,
+                        result.verdict);
+            } catch (IOException e) {
+                Log.e(TAG, "Could not write session log", e);
+            }
+        }
+        if (mDatabase != null) {
+            try {
+                mDatabase.append(fix.snapshot, result);
+                // A batch that stops growing is committed once its interval is over.
+                if (mDatabase.getPendingFixes() == 0) {
+                    mHandler.removeMessages(MSG_COMMIT_DATABASE);
+                } else if (!mHandler.hasMessages(MSG_COMMIT_DATABASE)) {
+                    mHandler.sendEmptyMessageDelayed(MSG_COMMIT_DATABASE,
+                            MainActivity.DATABASE_BATCH_INTERVAL_IN_MILLISECONDS);
+                }
+            } catch (SQLException e) {
+                Log.e(TAG, "Could not write session database", e);
+                closeDatabase();
+            }
+        }
+
+        mMainHandler.obtainMessage(MSG_RESULT, fix).sendToTarget();
+    }
+
+    private void openLogsInternal(File csvDirectory, File legacyCsvFile, File sessionFile,
+            SessionDatabase database, long startTime) {
+        closeLogsInternal();
+        if (mCsvSegments == null) {
+            mCsvSegments = new SegmentedLog(csvDirectory, MainActivity.CSV_LOG_SEGMENT_PREFIX,
+                    MainActivity.CSV_LOG_SEGMENT_EXTENSION, MainActivity.CSV_LOG_SEGMENT_BYTES,
+                    MainActivity.CSV_LOG_SEGMENT_AGE_IN_MILLISECONDS,
+                    MainActivity.CSV_LOG_MAX_BYTES, new SegmentedLog.ErrorListener() {
+                        @Override
+                        public void onError(String message, IOException cause) {
+                            Log.w(TAG, message, cause);
+                        }
+                    });
+            if (legacyCsvFile.exists()) {
+                // Its lines carry no date, so its start is unknown.
+                mCsvSegments.adopt(legacyCsvFile, 0, legacyCsvFile.lastModified());
+            }
+        }
+        mCsvLog = new CsvLogWriter(mCsvSegments, MainActivity.CSV_LOG_FLUSH_BYTES,
+                MainActivity.CSV_LOG_FLUSH_INTERVAL_IN_MILLISECONDS);
+        mCsvLog.start();
+        try {
+            mSessionLog = new SessionLogWriter(sessionFile, startTime);
+        } catch (IOException e) {
+            Log.e(TAG, "Could not create session log", e);
+        }
+        int deleted = SessionLogWriter.deleteOldLogs(sessionFile.getParentFile(),
+                MainActivity.SESSION_LOG_PREFIX, MainActivity.SESSION_LOG_EXTENSION,
+                MainActivity.SESSION_LOG_MAX_FILES, MainActivity.SESSION_LOG_MAX_BYTES);
+        if (deleted > 0) {
+            Log.i(TAG, "Deleted " + deleted + " old session logs");
+        }
+        try {
+            mDatabase = new SessionDatabaseWriter(database, startTime,
+                    MainActivity.DATABASE_RETENTION_IN_MILLISECONDS,
+                    MainActivity.DATABASE_PRUNE_INTERVAL_IN_MILLISECONDS,
+                    MainActivity.DATABASE_BATCH_FIXES,
+                    MainActivity.DATABASE_BATCH_INTERVAL_IN_MILLISECONDS);
+        } catch (SQLException e) {
+            Log.e(TAG, "Could not open session database", e);
+        }
+    }
+
+    private void closeLogsInternal() {
+        CsvLogWriter csvLog = mCsvLog;
+        if (csvLog != null) {
+            mCsvLog = null;
+            csvLog.close();
+            mClosedCsvDroppedLines += csvLog.getDroppedLines();
+        }
+        if (mSessionLog != null) {
+            try {
+                mSessionLog.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Could not close session log", e);
+            }
+            mSessionLog = null;
+        }
+        closeDatabase();
+    }
+
+    private void closeDatabase() {
+        mHandler.removeMessages(MSG_COMMIT_DATABASE);
+        if (mDatabase != null) {
+            try {
+                mDatabase.close();
+            } catch (SQLException e) {
+                Log.e(TAG, "Could not close session database", e);
+            }
+            mDatabase = null;
+        }
+    }
+}
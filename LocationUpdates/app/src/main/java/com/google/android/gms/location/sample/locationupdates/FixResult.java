@@ -0,0 +1,48 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+/**
+ * Outcome of processing one fix, as shown by the UI.
+ *
+ * Filled on the processing thread and handed to the main thread as a whole; instances are reused,
+ * so the UI must not keep a reference after applying it.
+ */
+public class FixResult {
+
+    /** Fix time in ms since the epoch. */
+    public long timestamp;
+
+    /** Satellites reported for the fix, and how many of them were used in it. */
+    public int satellitesInView;
+    public int satellitesUsed;
+
+    /** SNR statistics of the GPS satellites of the fix. */
+    public double mean;
+    public double standardDeviation;
+    public double coefficientOfVariation;
+
+    /**
+     * Spoof score of the fix between 0 and 1, and the SNR to elevation correlation behind it
+     * (NaN with fewer than three GPS satellites).
+     */
+    public float spoofScore;
+    public float snrElevationCorrelation;
+
+    /**
+     * Satellites of each constellation, indexed by {@code Constellation}, with their SNR
+     * statistics (0 without satellites) and the sky score of the spoof scorer (NaN with fewer
+     * than three satellites).
+     */
+    public final int[] constellationSatellites = new int[Constellation.COUNT];
+    public final double[] constellationMean = new double[Constellation.COUNT];
+    public final double[] constellationCoefficientOfVariation = new double[Constellation.COUNT];
+    public final float[] constellationSkyScore = new float[Constellation.COUNT];
+
+    /** How much GPS stood out from the other constellations, between 0 and 1, or NaN. */
+    public float constellationContrast;
+
+    /** Detector state after this fix, one of the {@code SpoofStateMachine.STATE_*} values. */
+    public int verdict;
+
+    /** Message to toast because the detector changed state on this fix, or null. */
+    public String message;
+}
@@ -0,0 +1,181 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.view.Choreographer;
+
+/**
+ * Coalesces UI refreshes to at most one per frame.
+ *
+ * Event handlers mark parts of the UI dirty with {@link #markDirty(int)}; the dirty flags
+ * accumulate until the next frame, where {@link Target#onFrame(int)} applies them all at once.
+ * Frames are driven by {@link Choreographer} from API 16 and approximated with a main-thread
+ * {@link Handler} before that. Counts how many refreshes were coalesced into an already scheduled
+ * frame and how many frames were dropped because a frame callback ran late. Must only be used from
+ * the main thread.
+ */
+public class FrameScheduler {
+
+    /** The text widgets need updating. */
+    public static final int DIRTY_TEXT = 1;
+    /** The sky plot needs redrawing. */
+    public static final int DIRTY_SKY = 2;
+    /** The PRN table has changed rows. */
+    public static final int DIRTY_TABLE = 4;
+
+    private static final long FRAME_INTERVAL_NANOS = 16666667L;
+
+    /**
+     * Applies the accumulated dirty flags on a frame.
+     */
+    public interface Target {
+        void onFrame(int dirtyFlags);
+    }
+
+    private final Target mTarget;
+    private final FrameSource mSource;
+
+    private int mDirtyFlags = 0;
+    private boolean mScheduled = false;
+    private boolean mStopped = false;
+
+    private long mFrames = 0;
+    private long mCoalescedUpdates = 0;
+    private long mDroppedFrames = 0;
+
+    public FrameScheduler(Target target) {
+        mTarget = target;
+        mSource = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+                ? new ChoreographerSource() : new HandlerSource();
+    }
+
+    /**
+     * Marks {@code flags} dirty and schedules a frame unless one is already scheduled.
+     */
+    public void markDirty(int flags) {
+        mDirtyFlags |= flags;
+        if (mStopped) {
+            return;
+        }
+        if (mScheduled) {
+            mCoalescedUpdates++;
+            return;
+        }
+        mScheduled = true;
+        mSource.schedule();
+    }
+
+    /**
+     * Cancels the scheduled frame; dirty flags are kept and applied after {@link #resume()}.
+     */
+    public void stop() {
+        mStopped = true;
+        if (mScheduled) {
+            mSource.cancel();
+            mScheduled = false;
+        }
+    }
+
+    public void resume() {
+        mStopped = false;
+        if (mDirtyFlags != 0 && !mScheduled) {
+            mScheduled = true;
+            mSource.schedule();
+        }
+    }
+
+    /**
+     * Frames on which dirty flags were applied.
+     */
+    public long getFrames() {
+        return mFrames;
+    }
+
+    /**
+     * Refreshes merged into a frame that was already scheduled.
+     */
+    public long getCoalescedUpdates() {
+        return mCoalescedUpdates;
+    }
+
+    /**
+     * Whole frame intervals the frame callbacks ran behind their frame time, in total.
+     */
+    public long getDroppedFrames() {
+        return mDroppedFrames;
+    }
+
+    void doFrame(long frameTimeNanos) {
+        mScheduled = false;
+        int flags = mDirtyFlags;
+        if (flags == 0 || mStopped) {
+            return;
+        }
+        mDirtyFlags = 0;
+        long late = System.nanoTime() - frameTimeNanos;
+        long dropped = late > 0 ? late / FRAME_INTERVAL_NANOS : 0;
+        mDroppedFrames += dropped;
+        mFrames++;
+        DiagnosticsTrace.record(DiagnosticsTrace.LEVEL_VERBOSE, DiagnosticsTrace.EVENT_FRAME,
+                flags, dropped, late / 1e6f);
+        mTarget.onFrame(flags);
+    }
+
+    private interface FrameSource {
+        void schedule();
+
+        void cancel();
+    }
+
+    /**
+     * Frame callbacks on the display vsync. Only loaded on API 16 and later.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private class ChoreographerSource implements FrameSource, Choreographer.FrameCallback {
+
+        private final Choreographer mChoreographer = Choreographer.getInstance();
+
+        @Override
+        public void schedule() {
+            mChoreographer.postFrameCallback(this);
+        }
+
+        @Override
+        public void cancel() {
+            mChoreographer.removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            FrameScheduler.this.doFrame(frameTimeNanos);
+        }
+    }
+
+    /**
+     * Posts to the next frame boundary of a fixed frame interval, for devices without
+     * Choreographer.
+     */
+    private class HandlerSource implements FrameSource, Runnable {
+
+        private final Handler mHandler = new Handler();
+        private long mFrameTimeNanos;
+
+        @Override
+        public void schedule() {
+            long now = System.nanoTime();
+            mFrameTimeNanos = (now / FRAME_INTERVAL_NANOS + 1) * FRAME_INTERVAL_NANOS;
+            mHandler.postDelayed(this, (mFrameTimeNanos - now) / 1000000L);
+        }
+
+        @Override
+        public void cancel() {
+            mHandler.removeCallbacks(this);
+        }
+
+        @Override
+        public void run() {
+            doFrame(mFrameTimeNanos);
+        }
+    }
+}
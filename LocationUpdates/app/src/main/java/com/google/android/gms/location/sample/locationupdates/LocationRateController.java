@@ -0,0 +1,146 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+/**
+ * Chooses how often to request locations.
+ *
+ * Locations are requested fast while the spoof detector has doubts or the device moves, slowly
+ * once the device has been stationary and the verdict normal for a while, and at the normal rate
+ * otherwise. Changing the request costs a round trip to the location provider, so the mode
+ * changes at most once per {@link #MIN_CHANGE_INTERVAL_MS}; a change that is due earlier is
+ * applied on the first event after that. Has no Android dependencies; all times are
+ * milliseconds of one monotonic clock.
+ */
+public class LocationRateController {
+
+    public static final int MODE_FAST = 0;
+    public static final int MODE_NORMAL = 1;
+    public static final int MODE_SLOW = 2;
+
+    /**
+     * Requested and fastest update intervals of each mode, in ms. The normal mode keeps the
+     * intervals of {@code MainActivity.UPDATE_INTERVAL_IN_MILLISECONDS}.
+     */
+    private static final long[] INTERVALS = { 2000, 10000, 60000 };
+    private static final long[] FASTEST_INTERVALS = { 1000, 5000, 30000 };
+
+    /** Speeds, in m/s, at or above which the device counts as moving and as not stationary. */
+    static final float MOVING_SPEED = 1.5f;
+    static final float STATIONARY_SPEED = 0.5f;
+
+    /** How long the device must be stationary, with a normal verdict, to slow down. */
+    static final long STABLE_PERIOD_MS = 120000;
+
+    static final long MIN_CHANGE_INTERVAL_MS = 15000;
+
+    private static final double EARTH_RADIUS_M = 6371000;
+
+    private int mMode = MODE_NORMAL;
+    private long mLastChange;
+    private int mVerdict = SpoofStateMachine.STATE_WARMUP;
+    private float mSpeed = 0;
+    private long mLastMoving;
+    private long mLastUnstable;
+
+    private boolean mHasLocation = false;
+    private long mLastLocationTime;
+    private double mLastLatitude;
+    private double mLastLongitude;
+
+    public LocationRateController(long now) {
+        reset(now);
+    }
+
+    /**
+     * Goes back to the normal mode and forgets the motion and verdicts seen so far.
+     */
+    public void reset(long now) {
+        mMode = MODE_NORMAL;
+        mLastChange = now;
+        mVerdict = SpoofStateMachine.STATE_WARMUP;
+        mSpeed = 0;
+        mLastMoving = now;
+        mLastUnstable = now;
+        mHasLocation = false;
+    }
+
+    public int getMode() {
+        return mMode;
+    }
+
+    public static long getInterval(int mode) {
+        return INTERVALS[mode];
+    }
+
+    public static long getFastestInterval(int mode) {
+        return FASTEST_INTERVALS[mode];
+    }
+
+    /**
+     * Records a new location. {@code speed} is the speed reported with it in m/s, or NaN to
+     * estimate it from the distance to the previous location.
+     *
+     * @return true if the mode changed and locations must be requested again
+     */
+    public boolean onLocation(long now, double latitude, double longitude, float speed) {
+        if (Float.isNaN(speed) && mHasLocation && now > mLastLocationTime) {
+            speed = (float) (distance(mLastLatitude, mLastLongitude, latitude, longitude)
+                    * 1000 / (now - mLastLocationTime));
+        }
+        mHasLocation = true;
+        mLastLocationTime = now;
+        mLastLatitude = latitude;
+        mLastLongitude = longitude;
+        if (!Float.isNaN(speed)) {
+            mSpeed = speed;
+            if (speed >= STATIONARY_SPEED) {
+                mLastMoving = now;
+            }
+        }
+        return evaluate(now);
+    }
+
+    /**
+     * Records the detector state after a fix.
+     *
+     * @return true if the mode changed and locations must be requested again
+     */
+    public boolean onVerdict(long now, int verdict) {
+        mVerdict = verdict;
+        if (verdict != SpoofStateMachine.STATE_NORMAL) {
+            mLastUnstable = now;
+        }
+        return evaluate(now);
+    }
+
+    private boolean evaluate(long now) {
+        int mode;
+        if (mVerdict == SpoofStateMachine.STATE_SUSPECT
+                || mVerdict == SpoofStateMachine.STATE_SPOOFED
+                || mVerdict == SpoofStateMachine.STATE_RECOVERING
+                || mSpeed >= MOVING_SPEED) {
+            mode = MODE_FAST;
+        } else if (now - mLastMoving >= STABLE_PERIOD_MS
+                && now - mLastUnstable >= STABLE_PERIOD_MS) {
+            mode = MODE_SLOW;
+        } else {
+            mode = MODE_NORMAL;
+        }
+        if (mode == mMode || now - mLastChange < MIN_CHANGE_INTERVAL_MS) {
+            return false;
+        }
+        mMode = mode;
+        mLastChange = now;
+        return true;
+    }
+
+    /**
+     * Equirectangular distance in meters, accurate enough between consecutive fixes.
+     */
+    static double distance(double latitude1, double longitude1, double latitude2,
+            double longitude2) {
+        double phi = Math.toRadians((latitude1 + latitude2) / 2);
+        double x = Math.toRadians(longitude2 - longitude1) * Math.cos(phi);
+        double y = Math.toRadians(latitude2 - latitude1);
+        return Math.sqrt(x * x + y * y) * EARTH_RADIUS_M;
+    }
+}
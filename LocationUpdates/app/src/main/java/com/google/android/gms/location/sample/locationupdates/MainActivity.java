@@ -16,16 +16,21 @@
 
 package com.google.android.gms.location.sample.locationupdates;
 
+import android.annotation.TargetApi;
 import android.content.Context;
+import android.content.pm.ApplicationInfo;
 import android.location.GpsSatellite;
 import android.location.GpsStatus;
 import android.location.Location;
 import android.location.LocationManager;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.support.v7.app.ActionBarActivity;
 import android.util.Log;
 import android.util.StringBuilderPrinter;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.widget.Button;
 import android.widget.LinearLayout;
 import android.widget.TextView;
@@ -41,15 +46,12 @@ import com.google.android.gms.location.LocationServices;
 
 import org.w3c.dom.Text;
 
-import java.io.FileOutputStream;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.text.DateFormat;
-import java.text.DecimalFormat;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.Date;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
 
 /**
  * Getting Location Updates.
@@ -66,7 +68,8 @@ import java.util.List;
  * https://github.com/googlesamples/android-google-accounts/tree/master/QuickStart.
  */
 public class MainActivity extends ActionBarActivity implements
-        ConnectionCallbacks, OnConnectionFailedListener, LocationListener, GpsStatus.Listener {
+        ConnectionCallbacks, OnConnectionFailedListener, LocationListener, GpsStatus.Listener,
+        FixProcessor.Callback, FrameScheduler.Target {
 
     protected static final String TAG = "location-updates-sample";
 
@@ -82,6 +85,81 @@ public class MainActivity extends ActionBarActivity implements
     public static final long FASTEST_UPDATE_INTERVAL_IN_MILLISECONDS =
             UPDATE_INTERVAL_IN_MILLISECONDS / 2;
 
+    /**
+     * Number of recent SNR samples kept per satellite.
+     */
+    public static final int SNR_HISTORY_SIZE = 120;
+
+    /**
+     * App-private directory of the CSV log the coefficient of variation of every fix is written
+     * to, split into segments named {@code SNR_PRN_VALUE-<start time>.csv}.
+     */
+    public static final String CSV_LOG_DIRECTORY_NAME = "snr_log";
+
+    public static final String CSV_LOG_SEGMENT_PREFIX = "SNR_PRN_VALUE";
+
+    public static final String CSV_LOG_SEGMENT_EXTENSION = ".csv";
+
+    /**
+     * Single CSV log file of earlier versions, moved into the log directory on first start.
+     */
+    public static final String CSV_LOG_FILE_NAME = "SNR_PRN_VALUE.csv";
+
+    /**
+     * A CSV log segment is closed and compressed once it holds this many bytes or is this old.
+     * The oldest segments are deleted while the log takes more than the maximum size.
+     */
+    public static final long CSV_LOG_SEGMENT_BYTES = 256 * 1024;
+
+    public static final long CSV_LOG_SEGMENT_AGE_IN_MILLISECONDS = 24L * 60 * 60 * 1000;
+
+    public static final long CSV_LOG_MAX_BYTES = 4 * 1024 * 1024;
+
+    /**
+     * The CSV log is flushed once this many bytes are pending, or after the flush interval.
+     */
+    public static final int CSV_LOG_FLUSH_BYTES = 4096;
+
+    public static final long CSV_LOG_FLUSH_INTERVAL_IN_MILLISECONDS = 5000;
+
+    /**
+     * The session database commits its inserts once this many fixes are pending, or after the
+     * batch interval. Fixes older than the retention period are deleted when it is opened, and
+     * again after a commit once the prune interval has passed.
+     */
+    public static final int DATABASE_BATCH_FIXES = 30;
+
+    public static final long DATABASE_BATCH_INTERVAL_IN_MILLISECONDS = 10000;
+
+    public static final long DATABASE_RETENTION_IN_MILLISECONDS = 30L * 24 * 60 * 60 * 1000;
+
+    public static final long DATABASE_PRUNE_INTERVAL_IN_MILLISECONDS = 60L * 60 * 1000;
+
+    /**
+     * Most satellites recorded per fix, across all constellations.
+     */
+    public static final int MAX_SATELLITES = 128;
+
+    /**
+     * Binary session logs are named session-&lt;start time in ms&gt; with this extension.
+     */
+    public static final String SESSION_LOG_PREFIX = "session-";
+
+    public static final String SESSION_LOG_EXTENSION = ".snrl";
+
+    /**
+     * The oldest session logs are deleted when a session starts while there are more than this
+     * many or they take more than the maximum size.
+     */
+    public static final int SESSION_LOG_MAX_FILES = 50;
+
+    public static final long SESSION_LOG_MAX_BYTES = 32 * 1024 * 1024;
+
+    /**
+     * Fraction digits of the latitude and longitude, as String.format("%f") showed them.
+     */
+    private static final int COORDINATE_DECIMALS = 6;
+
     // Keys for storing activity state in the Bundle.
     protected final static String REQUESTING_LOCATION_UPDATES_KEY = "requesting-location-updates-key";
     protected final static String LOCATION_KEY = "location-key";
@@ -97,6 +175,11 @@ public class MainActivity extends ActionBarActivity implements
      */
     protected LocationRequest mLocationRequest;
 
+    /**
+     * Adapts {@link #mLocationRequest} to the detector state and the motion of the device.
+     */
+    private LocationRateController mRateController;
+
     /**
      * Represents a geographical location.
      */
@@ -111,7 +194,6 @@ public class MainActivity extends ActionBarActivity implements
     protected TextView mSatelliteTotalTextView;
     protected TextView mSatelliteUsedTextView;
     protected TextView mSignalAccuracy;
-    protected TextView mPrn;
 
 
     // Labels.
@@ -133,25 +215,90 @@ public class MainActivity extends ActionBarActivity implements
     int totalSatellite;
     int totalSatelliteUsed;
     float signalAccuracy;
-    String getAllPrn, removePrnBracket;
     private LocationManager mService;
     private GpsStatus mStatus;
     private SatelliteView satelliteView;
-    DecimalFormat df = new DecimalFormat("0.00");
-    LinkedList<String> savedSNR = new LinkedList<String>();
-    LinkedList<String> savedSamples = new LinkedList<String>();
-    int tempCountCV7 =0;
-    int tempCountCV = 0;
-    int tempCountCVAfter = 0;
-    int countCV =0;
-    int countCVAfter =0;
+    private FixProcessor mFixProcessor;
+    private FrameScheduler mFrameScheduler;
+    private PrnTable mPrnTable;
+    private StartupTrace mStartupTrace;
+
+    /**
+     * Registers with the location manager and builds the GoogleApiClient once the first frame was
+     * drawn; none of it is needed to show the first frame.
+     */
+    private final Runnable mDeferredInit = new Runnable() {
+        @Override
+        public void run() {
+            runDeferredInit();
+        }
+    };
+    private boolean mDeferredInitDone = false;
+    private boolean mStarted = false;
+    private boolean mDestroyed = false;
+
+    /**
+     * Set once the processing pipeline was handed over to the next activity instance, which then
+     * owns it.
+     */
+    private boolean mRetained = false;
+
+    /**
+     * Satellites of the latest status, captured in one pass on the main thread and shared by the
+     * sky plot; the processing thread gets a copy in its pooled {@link FixProcessor.Fix}. Kept
+     * across configuration changes.
+     */
+    private SatelliteSnapshot mSnapshot;
+
+    /**
+     * Last text shown by each widget that updateUI refreshes.
+     */
+    private final TextBuffer mLatitudeText = new TextBuffer(32);
+    private final TextBuffer mLongitudeText = new TextBuffer(32);
+    private final TextBuffer mLastUpdateTimeText = new TextBuffer(48);
+    private final TextBuffer mSatelliteTotalText = new TextBuffer(4);
+    private final TextBuffer mSatelliteUsedText = new TextBuffer(4);
+    private final TextBuffer mSignalAccuracyText = new TextBuffer(24);
     public void onCreate(Bundle savedInstanceState) {
 
         super.onCreate(savedInstanceState);
+        mStartupTrace = new StartupTrace();
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            DiagnosticsTrace.setLevel(DiagnosticsTrace.LEVEL_VERBOSE);
+        }
         setContentView(R.layout.main_activity);
         mService = (LocationManager) getSystemService(Context.LOCATION_SERVICE);
-        mService.addGpsStatusListener(this);
         satelliteView = (SatelliteView) findViewById(R.id.SatelliteView);
+        satelliteView.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                // Tapping the sky plot toggles the SNR-colored mode with trails.
+                satelliteView.setSnrMode(!satelliteView.isSnrMode());
+            }
+        });
+        RetainedState retained = (RetainedState) getLastCustomNonConfigurationInstance();
+        PrnTableModel prnTableModel;
+        if (retained != null) {
+            // Recreated after a configuration change: the detector carries on where it was.
+            mFixProcessor = retained.fixProcessor;
+            mFixProcessor.setCallback(this);
+            prnTableModel = retained.prnTableModel;
+            mSnapshot = retained.snapshot;
+            mRateController = retained.rateController;
+            totalSatellite = retained.totalSatellite;
+            totalSatelliteUsed = retained.totalSatelliteUsed;
+            signalAccuracy = retained.signalAccuracy;
+            satelliteView.setTrails(retained.trails);
+            satelliteView.setSnrMode(retained.snrMode);
+            satelliteView.setList(mSnapshot);
+            mStartupTrace.mark(StartupTrace.MARK_DETECTOR_READY);
+        } else {
+            mFixProcessor = new FixProcessor(SNR_HISTORY_SIZE, MAX_SATELLITES, this);
+            mFixProcessor.start();
+            prnTableModel = new PrnTableModel(Constellation.MAX_KEY);
+            mSnapshot = new SatelliteSnapshot(MAX_SATELLITES);
+        }
+        mFrameScheduler = new FrameScheduler(this);
 
 
         // Locate the UI widgets.
@@ -163,23 +310,77 @@ public class MainActivity extends ActionBarActivity implements
         mSatelliteTotalTextView = (TextView) findViewById(R.id.tvSatTotal);
         mSatelliteUsedTextView = (TextView) findViewById(R.id.tvSatUsed);
         mSignalAccuracy = (TextView) findViewById(R.id.tvAccuracy);
-        mPrn = (TextView) findViewById(R.id.tvPRN);
-
-
-        // Set labels.
-        mLatitudeLabel = getResources().getString(R.string.latitude_label);
-        mLongitudeLabel = getResources().getString(R.string.longitude_label);
-        mLastUpdateTimeLabel = getResources().getString(R.string.last_update_time_label);
+        mPrnTable = new PrnTable(prnTableModel,
+                (LinearLayout) findViewById(R.id.llPRN),
+                getResources().getDimension(R.dimen.default_text_size),
+                getResources().getDimensionPixelSize(R.dimen.prn_row_indent));
+        findViewById(R.id.llPRN).setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                // Tapping the table switches between sorting by PRN and by SNR.
+                mPrnTable.toggleSortOrder();
+            }
+        });
 
         mRequestingLocationUpdates = false;
         mLastUpdateTime = "";
 
         // Update values using data stored in the Bundle.
         updateValuesFromBundle(savedInstanceState);
+        if (retained != null) {
+            mFrameScheduler.markDirty(FrameScheduler.DIRTY_TEXT | FrameScheduler.DIRTY_SKY
+                    | FrameScheduler.DIRTY_TABLE);
+        }
+
+        // The GoogleApiClient is built and the GPS listeners are registered after the first draw.
+        final View decorView = getWindow().getDecorView();
+        decorView.getViewTreeObserver().addOnPreDrawListener(
+                new ViewTreeObserver.OnPreDrawListener() {
+                    @Override
+                    public boolean onPreDraw() {
+                        decorView.getViewTreeObserver().removeOnPreDrawListener(this);
+                        // Posted from within the traversal, so it runs after the frame is drawn.
+                        decorView.post(mDeferredInit);
+                        return true;
+                    }
+                });
+    }
+
+    /**
+     * Startup work deferred until the first frame was drawn. Connects the GoogleApiClient right
+     * away if the activity was started meanwhile.
+     */
+    private void runDeferredInit() {
+        if (mDeferredInitDone || mDestroyed) {
+            return;
+        }
+        mDeferredInitDone = true;
+        mStartupTrace.mark(StartupTrace.MARK_FIRST_FRAME);
+        mService.addGpsStatusListener(this);
 
         // Kick off the process of building a GoogleApiClient and requesting the LocationServices
         // API.
         buildGoogleApiClient();
+        if (mStarted) {
+            mGoogleApiClient.connect();
+        }
+        mStartupTrace.mark(StartupTrace.MARK_DEFERRED_INIT);
+    }
+
+    /**
+     * Resolves the labels of the text widgets on their first update.
+     */
+    private void loadLabels() {
+        mLatitudeLabel = getResources().getString(R.string.latitude_label);
+        mLongitudeLabel = getResources().getString(R.string.longitude_label);
+        mLastUpdateTimeLabel = getResources().getString(R.string.last_update_time_label);
+    }
+
+    /**
+     * Whether the GoogleApiClient was built and is connected.
+     */
+    private boolean isClientConnected() {
+        return mGoogleApiClient != null && mGoogleApiClient.isConnected();
     }
 
     /**
@@ -210,7 +411,7 @@ public class MainActivity extends ActionBarActivity implements
             if (savedInstanceState.keySet().contains(LAST_UPDATED_TIME_STRING_KEY)) {
                 mLastUpdateTime = savedInstanceState.getString(LAST_UPDATED_TIME_STRING_KEY);
             }
-            updateUI();
+            mFrameScheduler.markDirty(FrameScheduler.DIRTY_TEXT);
         }
     }
 
@@ -243,29 +444,58 @@ public class MainActivity extends ActionBarActivity implements
      */
     protected void createLocationRequest() {
         mLocationRequest = new LocationRequest();
+        if (mRateController == null) {
+            mRateController = new LocationRateController(SystemClock.elapsedRealtime());
+        }
+        applyLocationMode(mRateController.getMode());
+    }
 
+    /**
+     * Sets the intervals and priority of {@link #mLocationRequest} for one of the
+     * {@link LocationRateController} modes. Only the slow mode, used while the device is
+     * stationary and the verdict normal, trades accuracy for battery.
+     */
+    private void applyLocationMode(int mode) {
         // Sets the desired interval for active location updates. This interval is
         // inexact. You may not receive updates at all if no location sources are available, or
         // you may receive them slower than requested. You may also receive updates faster than
         // requested if other applications are requesting location at a faster interval.
-        mLocationRequest.setInterval(UPDATE_INTERVAL_IN_MILLISECONDS);
+        mLocationRequest.setInterval(LocationRateController.getInterval(mode));
 
         // Sets the fastest rate for active location updates. This interval is exact, and your
         // application will never receive updates faster than this value.
-        mLocationRequest.setFastestInterval(FASTEST_UPDATE_INTERVAL_IN_MILLISECONDS);
+        mLocationRequest.setFastestInterval(LocationRateController.getFastestInterval(mode));
 
-        mLocationRequest.setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY);
+        mLocationRequest.setPriority(mode == LocationRateController.MODE_SLOW
+                ? LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY
+                : LocationRequest.PRIORITY_HIGH_ACCURACY);
+    }
+
+    /**
+     * Switches to the mode chosen by {@link #mRateController}. Requesting updates again with the
+     * same listener replaces the previous request.
+     */
+    private void onLocationModeChanged() {
+        int mode = mRateController.getMode();
+        Log.i(TAG, "Location updates every " + LocationRateController.getInterval(mode) + " ms");
+        applyLocationMode(mode);
+        if (mRequestingLocationUpdates && isClientConnected()) {
+            startLocationUpdates();
+        }
     }
 
     /**
      * Handles the Start Updates button and requests start of location updates. Does nothing if
-     * updates have already been requested.
+     * updates have already been requested. Before the GoogleApiClient is connected, the updates
+     * are requested by {@link #onConnected(Bundle)}.
      */
     public void startUpdatesButtonHandler(View view) {
         if (!mRequestingLocationUpdates) {
             mRequestingLocationUpdates = true;
             setButtonsEnabledState();
-            startLocationUpdates();
+            if (isClientConnected()) {
+                startLocationUpdates();
+            }
         }
     }
 
@@ -277,7 +507,9 @@ public class MainActivity extends ActionBarActivity implements
         if (mRequestingLocationUpdates) {
             mRequestingLocationUpdates = false;
             setButtonsEnabledState();
-            stopLocationUpdates();
+            if (isClientConnected()) {
+                stopLocationUpdates();
+            }
         }
     }
 
@@ -308,28 +540,34 @@ public class MainActivity extends ActionBarActivity implements
     }
 
     /**
-     * Updates the latitude, the longitude, and the last location time in the UI.
+     * Updates the latitude, the longitude, and the last location time in the UI. Each text is
+     * formatted into its {@link TextBuffer} and only widgets whose text changed are touched.
      */
     private void updateUI() {
-        mLatitudeTextView.setText(String.format("%s: %f", mLatitudeLabel,
-                mCurrentLocation.getLatitude()));
-        mLongitudeTextView.setText(String.format("%s: %f", mLongitudeLabel,
-                mCurrentLocation.getLongitude()));
-        mLastUpdateTimeTextView.setText(String.format("%s: %s", mLastUpdateTimeLabel,
-                mLastUpdateTime));
-        mSatelliteTotalTextView.setText(Integer.toString(totalSatellite));
-        mSatelliteUsedTextView.setText(Integer.toString(totalSatelliteUsed));
-        mSignalAccuracy.setText(signalAccuracy + " (" + getGrade() + ")");
-        StringBuilder sb = new StringBuilder();
-
-
-        mPrn.setText(sb.append(removePrnBracket));
-
-
-        mPrn.setText(removePrnBracket);
-
+        if (mLatitudeLabel == null) {
+            loadLabels();
+        }
+        if (mCurrentLocation != null) {
+            bind(mLatitudeTextView, mLatitudeText.begin().append(mLatitudeLabel).append(": ")
+                    .append(mCurrentLocation.getLatitude(), COORDINATE_DECIMALS));
+            bind(mLongitudeTextView, mLongitudeText.begin().append(mLongitudeLabel).append(": ")
+                    .append(mCurrentLocation.getLongitude(), COORDINATE_DECIMALS));
+        }
+        bind(mLastUpdateTimeTextView, mLastUpdateTimeText.begin().append(mLastUpdateTimeLabel)
+                .append(": ").append(mLastUpdateTime));
+        bind(mSatelliteTotalTextView, mSatelliteTotalText.begin().append(totalSatellite));
+        bind(mSatelliteUsedTextView, mSatelliteUsedText.begin().append(totalSatelliteUsed));
+        bind(mSignalAccuracy, mSignalAccuracyText.begin().append(signalAccuracy, 1)
+                .append(" (").append(getGrade()).append(')'));
+    }
 
-        //  System.out.println(getAllPrn);
+    /**
+     * Shows the text of {@code buffer} in {@code view} if it changed since the last bind.
+     */
+    private static void bind(TextView view, TextBuffer buffer) {
+        if (buffer.commit()) {
+            view.setText(buffer.getChars(), 0, buffer.length());
+        }
     }
 
     /**
@@ -348,7 +586,19 @@ public class MainActivity extends ActionBarActivity implements
     @Override
     protected void onStart() {
         super.onStart();
-        mGoogleApiClient.connect();
+        mStarted = true;
+        // Logs kept open across a configuration change go on with the same session.
+        if (!mFixProcessor.isLogsOpen()) {
+            long now = System.currentTimeMillis();
+            mFixProcessor.openLogs(new File(getFilesDir(), CSV_LOG_DIRECTORY_NAME),
+                    getFileStreamPath(CSV_LOG_FILE_NAME),
+                    getFileStreamPath(SESSION_LOG_PREFIX + now + SESSION_LOG_EXTENSION),
+                    SessionDatabase.getInstance(this), now);
+        }
+        mFrameScheduler.resume();
+        if (mGoogleApiClient != null) {
+            mGoogleApiClient.connect();
+        }
     }
 
     @Override
@@ -358,7 +608,7 @@ public class MainActivity extends ActionBarActivity implements
         // connection to GoogleApiClient intact.  Here, we resume receiving
         // location updates if the user has requested them.
 
-        if (mGoogleApiClient.isConnected() && mRequestingLocationUpdates) {
+        if (isClientConnected() && mRequestingLocationUpdates) {
             startLocationUpdates();
         }
     }
@@ -367,18 +617,39 @@ public class MainActivity extends ActionBarActivity implements
     protected void onPause() {
         super.onPause();
         // Stop location updates to save battery, but don't disconnect the GoogleApiClient object.
-        if (mGoogleApiClient.isConnected()) {
+        if (isClientConnected()) {
             stopLocationUpdates();
         }
     }
 
     @Override
     protected void onStop() {
-        mGoogleApiClient.disconnect();
+        mStarted = false;
+        if (mGoogleApiClient != null) {
+            mGoogleApiClient.disconnect();
+        }
+        if (!isChangingConfigurationsCompat()) {
+            mFixProcessor.closeLogs();
+        }
+        // Nothing is drawn while stopped; pending changes are applied after onStart.
+        mFrameScheduler.stop();
 
         super.onStop();
     }
 
+    @Override
+    protected void onDestroy() {
+        mDestroyed = true;
+        getWindow().getDecorView().removeCallbacks(mDeferredInit);
+        if (mDeferredInitDone) {
+            mService.removeGpsStatusListener(this);
+        }
+        if (!mRetained) {
+            mFixProcessor.quit();
+        }
+        super.onDestroy();
+    }
+
     /**
      * Runs when a GoogleApiClient object successfully connects.
      */
@@ -399,7 +670,10 @@ public class MainActivity extends ActionBarActivity implements
         if (mCurrentLocation == null) {
             mCurrentLocation = LocationServices.FusedLocationApi.getLastLocation(mGoogleApiClient);
             mLastUpdateTime = DateFormat.getTimeInstance().format(new Date());
-            updateUI();
+            if (mCurrentLocation != null) {
+                mStartupTrace.mark(StartupTrace.MARK_FIRST_LOCATION);
+            }
+            mFrameScheduler.markDirty(FrameScheduler.DIRTY_TEXT);
         }
 
         // If the user presses the Start Updates button before GoogleApiClient connects, we set
@@ -411,173 +685,64 @@ public class MainActivity extends ActionBarActivity implements
     }
 
     /**
-     * Callback that fires when the location changes.
+     * Callback that fires when the location changes. Satellites are sampled separately, see
+     * {@link #onGpsStatusChanged(int)}.
      */
     @Override
     public void onLocationChanged(Location location) {
-
-        double myLatitude = location.getLatitude();
-        double myLongitude = location.getLongitude();
-        int hour;
-        int minute;
-        int seconds;
-        double temp = 0;
-        float totalSamples = 0;
-        float total2df = 0;
-        float mean;
-        float samples = 0;
-        int countSamples = 0;
-        double variance;
-        double stddev;
-        double coefficientOfVariation = 0;
-        Location crntLocation = new Location("crntlocation");
-        crntLocation.setLatitude(myLatitude);
-        crntLocation.setLongitude(myLongitude);
-
+        mStartupTrace.mark(StartupTrace.MARK_FIRST_LOCATION);
         mCurrentLocation = location;
         mLastUpdateTime = DateFormat.getTimeInstance().format(new Date());
 
         if (location.hasAccuracy()) {
             signalAccuracy = location.getAccuracy();
         }
-
-        mStatus = mService.getGpsStatus(null);
-        Iterable<GpsSatellite> satellites = mStatus.getSatellites();
-        Iterator<GpsSatellite> sat = satellites.iterator();
-        List<String> detail = new LinkedList<String>();
-        satelliteView.setList(satellites);
-        String lSatellites = null;
-        String filename = "SNR_PRN_VALUE.csv";
-        Calendar c;
-        while (sat.hasNext()) {
-            GpsSatellite satellite = sat.next();
-            lSatellites =
-                    "\t" + "PRN: " + satellite.getPrn() + "\t" +
-                            "SNR: " + satellite.getSnr() + "\n";
-
-            if (satellite.getPrn() > 0 && satellite.getPrn() <= 32) {
-
-                savedSamples.add(Float.toString(satellite.getSnr()));
-
-                detail.add(lSatellites);
-
-                getAllPrn = String.valueOf(detail);
-
-                removePrnBracket = getAllPrn.replace("[", "").replace("]", "").replace(",", "");
-
-                int iTempCountInView = 0;
-                int iTempCountInUse = 0;
-                float iTempCountSNR = 0;
-
-                if (satellites != null) {
-                    for (GpsSatellite gpsSatellite : satellites) {
-                        iTempCountInView++;
-                        if (gpsSatellite.usedInFix()) {
-                            iTempCountInUse++;
-                        }
-
-                        totalSatellite = iTempCountInView;
-                        totalSatelliteUsed = iTempCountInUse;
-                    }
-                    temp = 0;
-                    totalSamples = totalSamples + iTempCountSNR;
-                    total2df = Float.parseFloat(df.format(totalSamples));
-                    savedSNR.add(Float.toString(total2df));
-                    System.out.println("Count SNR" + total2df);
-                    countSamples++;
-
-                }
-                try
-
-                {
-                    FileOutputStream out = openFileOutput(filename, Context.MODE_APPEND);
-
-
-                    System.out.println("Total SNR " + total2df);
-                    System.out.println("Total Count Samples " + countSamples);
-                    mean = total2df / countSamples;
-                    System.out.println("Mean " + mean);
-
-                    for (int j = 0; j < savedSamples.size(); j++) {
-                        samples = Float.parseFloat(savedSamples.get(j));
-                        System.out.println("Check Samples" + samples);
-                        double sqrtdifftomean = Double.parseDouble(df.format(Math.pow(samples - mean, 2)));
-                        System.out.println("Square diff to mean " + sqrtdifftomean);
-                        temp += sqrtdifftomean;
-                    }
-                    System.out.println("Temp " + temp);
-                    variance = Double.parseDouble(df.format(temp / countSamples));
-                    System.out.println("Variance " + variance);
-                    stddev = Double.parseDouble(df.format(Math.sqrt(variance)));
-                    System.out.println("Standard Deviation " + stddev);
-                    coefficientOfVariation = Double.parseDouble(df.format((stddev / mean) * 100));
-                    System.out.println("Coefficient Of Variation " + coefficientOfVariation + "%");
-                    System.out.println("Store inside notepad " + satellite.getPrn() + "," + samples + ",");
-
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-
-            }
-            else
-            {
-               System.out.println("Other satellite detected");
-            }
+        mFixProcessor.submitLocation(location);
+        if (mRateController.onLocation(SystemClock.elapsedRealtime(), location.getLatitude(),
+                location.getLongitude(), location.hasSpeed() ? location.getSpeed() : Float.NaN)) {
+            onLocationModeChanged();
         }
 
-            savedSamples.clear();
-            savedSNR.clear();
-
-
-            try {
-
-                c = Calendar.getInstance();
-                hour = c.get(Calendar.HOUR);
-                minute = c.get(Calendar.MINUTE);
-                seconds = c.get(Calendar.SECOND);
-                FileOutputStream out = openFileOutput(filename, Context.MODE_APPEND);
-                String strcov = coefficientOfVariation + "," + hour + ":" + minute + ":" + seconds + "\n";
-                countCV = tempCountCV;
-
-                if (countCV < 5) {
-                    Toast.makeText(getApplicationContext(), "Your location is original!",
-                            Toast.LENGTH_LONG).show();
-
-                }
-                else if(countCV >= 5 && (coefficientOfVariation >= 5 && coefficientOfVariation < 10))
-                {
-                    Toast.makeText(getApplicationContext(), "Warning: Your location might be fake!",
-                            Toast.LENGTH_LONG).show();
-
-                }
-
-                else if(countCV >= 5 && (coefficientOfVariation <= 5 || coefficientOfVariation >= 10))
-                {
-
-                    tempCountCVAfter++;
-                }
+        mFrameScheduler.markDirty(FrameScheduler.DIRTY_TEXT);
+    }
 
+    @Override
+    public void onAnalyzerReady() {
+        mStartupTrace.mark(StartupTrace.MARK_DETECTOR_READY);
+    }
 
+    /**
+     * Applies the outcome of a processed fix to the UI.
+     */
+    @Override
+    public void onFixProcessed(FixResult result) {
+        mStartupTrace.mark(StartupTrace.MARK_FIRST_FIX);
+        totalSatellite = result.satellitesInView;
+        totalSatelliteUsed = result.satellitesUsed;
+        if (mRateController.onVerdict(SystemClock.elapsedRealtime(), result.verdict)) {
+            onLocationModeChanged();
+        }
+        if (result.message != null) {
+            Toast.makeText(getApplicationContext(), result.message, Toast.LENGTH_LONG).show();
+        }
+        mFrameScheduler.markDirty(FrameScheduler.DIRTY_TEXT);
+    }
 
-                System.out.println("Store inside notepad " + strcov);
-                System.out.println("Count No. of CV " + countCV);
-                out.write(strcov.getBytes());
-                countCVAfter = tempCountCVAfter;
-                System.out.println("After spoof count " + countCVAfter + " times");
-                if (countCVAfter >= 10)
-                {
-                    Toast.makeText(getApplicationContext(), "Your location is back to original!",
-                            Toast.LENGTH_LONG).show();
-                }
-                out.close();
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+    /**
+     * Applies everything that changed since the last frame, at most once per frame.
+     */
+    @Override
+    public void onFrame(int dirtyFlags) {
+        if ((dirtyFlags & FrameScheduler.DIRTY_TEXT) != 0) {
             updateUI();
         }
-
-
-
+        if ((dirtyFlags & FrameScheduler.DIRTY_SKY) != 0) {
+            satelliteView.invalidate();
+        }
+        if ((dirtyFlags & FrameScheduler.DIRTY_TABLE) != 0) {
+            mPrnTable.bind();
+        }
+    }
 
     @Override
     public void onConnectionSuspended(int cause) {
@@ -595,6 +760,28 @@ public class MainActivity extends ActionBarActivity implements
     }
 
 
+    /**
+     * Hands the processing pipeline and the UI models over to the activity instance recreated
+     * after a configuration change, see {@link RetainedState}.
+     */
+    @Override
+    public Object onRetainCustomNonConfigurationInstance() {
+        mRetained = true;
+        return new RetainedState(mFixProcessor, mPrnTable.getModel(), mSnapshot,
+                satelliteView.getTrails(), mRateController, satelliteView.isSnrMode(),
+                totalSatellite, totalSatelliteUsed, signalAccuracy);
+    }
+
+    /**
+     * Whether the activity is stopped only to be recreated with a new configuration. Always false
+     * before API 11, where the logs are then reopened as a new session.
+     */
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private boolean isChangingConfigurationsCompat() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
+                && isChangingConfigurations();
+    }
+
     /**
      * Stores activity data in the Bundle.
      */
@@ -605,9 +792,59 @@ public class MainActivity extends ActionBarActivity implements
         super.onSaveInstanceState(savedInstanceState);
     }
 
+    /**
+     * Samples the satellites whenever the GPS engine reports a new status, independently of the
+     * location update interval. The same {@link GpsStatus} instance is refilled on every event.
+     * Only captures the satellites; statistics, spoof detection and logging run on the
+     * {@link FixProcessor} thread.
+     */
     @Override
     public void onGpsStatusChanged(int changeType) {
+        if (changeType != GpsStatus.GPS_EVENT_SATELLITE_STATUS) {
+            return;
+        }
+        mStatus = mService.getGpsStatus(mStatus);
+        mSnapshot.clear(System.currentTimeMillis());
+        if (mCurrentLocation != null && mCurrentLocation.hasAccuracy()) {
+            mSnapshot.setAccuracy(mCurrentLocation.getAccuracy());
+        }
+        for (GpsSatellite satellite : mStatus.getSatellites()) {
+            mSnapshot.add(satellite.getPrn(), satellite.getSnr(), satellite.getElevation(),
+                    satellite.getAzimuth(), satellite.usedInFix());
+        }
+        satelliteView.setList(mSnapshot);
+        mFrameScheduler.markDirty(FrameScheduler.DIRTY_SKY);
+        if (mPrnTable.getModel().update(mSnapshot)) {
+            mFrameScheduler.markDirty(FrameScheduler.DIRTY_TABLE);
+        }
 
+        FixProcessor.Fix fix = mFixProcessor.obtain();
+        if (fix == null) {
+            // Counted in dumpsys, so only the first drop is logged.
+            if (mFixProcessor.getDroppedFixes() == 1) {
+                Log.w(TAG, "Fix processing fell behind, dropping satellite status");
+            }
+            return;
+        }
+        fix.snapshot.copyFrom(mSnapshot);
+        mFixProcessor.submit(fix);
+    }
+
+    /**
+     * Adds the diagnostics trace to {@code adb shell dumpsys activity} output.
+     */
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        writer.print(prefix);
+        writer.println("frames " + mFrameScheduler.getFrames()
+                + " coalesced " + mFrameScheduler.getCoalescedUpdates()
+                + " dropped " + mFrameScheduler.getDroppedFrames());
+        writer.print(prefix);
+        writer.println("fixes dropped " + mFixProcessor.getDroppedFixes()
+                + " csv lines dropped " + mFixProcessor.getDroppedCsvLines());
+        mStartupTrace.dump(prefix, writer);
+        DiagnosticsTrace.dump(writer);
     }
 
     private String getGrade()
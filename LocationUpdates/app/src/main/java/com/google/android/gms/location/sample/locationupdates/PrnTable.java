@@ -0,0 +1,106 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import android.content.Context;
+import android.util.TypedValue;
+import android.view.View;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+/**
+ * Live PRN/SNR table shown in a vertical {@link LinearLayout}.
+ *
+ * One {@link TextView} per position is created the first time the table grows to it and then
+ * reused, so a fix never adds or removes views; surplus positions are hidden. {@link #bind()}
+ * only formats the rows that {@link PrnTableModel} flags as changed, or every shown row when the
+ * order changed, and each row's {@link TextBuffer} then skips the widgets whose text is the same.
+ * Must only be used from the main thread.
+ */
+public class PrnTable {
+
+    private final PrnTableModel mModel;
+    private final LinearLayout mContainer;
+    private final TextView[] mRows;
+    private final TextBuffer[] mTexts;
+    private final float mTextSize;
+    private final int mIndent;
+    private int mCreatedRows = 0;
+    private int mShownRows = 0;
+    private boolean mBoundOnce = false;
+
+    /**
+     * @param textSize text size of the rows in pixels
+     * @param indent   left padding of the rows in pixels
+     */
+    public PrnTable(PrnTableModel model, LinearLayout container, float textSize, int indent) {
+        mModel = model;
+        mContainer = container;
+        mContainer.setOrientation(LinearLayout.VERTICAL);
+        mRows = new TextView[model.getMaxKey()];
+        mTexts = new TextBuffer[model.getMaxKey()];
+        mTextSize = textSize;
+        mIndent = indent;
+    }
+
+    public PrnTableModel getModel() {
+        return mModel;
+    }
+
+    /**
+     * Switches between sorting by satellite and by SNR and shows the new order.
+     */
+    public void toggleSortOrder() {
+        mModel.setSortOrder(mModel.getSortOrder() == PrnTableModel.SORT_BY_PRN
+                ? PrnTableModel.SORT_BY_SNR : PrnTableModel.SORT_BY_PRN);
+        bind();
+    }
+
+    /**
+     * Shows the changes of the model since the last bind.
+     */
+    public void bind() {
+        int count = mModel.getRowCount();
+        // The model may have been filled before this table, e.g. across a configuration change.
+        boolean all = !mBoundOnce || mModel.isOrderChanged();
+        mBoundOnce = true;
+        while (mCreatedRows < count) {
+            createRow();
+        }
+        for (int position = 0; position < count; position++) {
+            int key = mModel.getKeyAt(position);
+            if (!all && !mModel.isChanged(key)) {
+                continue;
+            }
+            // e.g. "G12" for GPS PRN 12 and "R5" for GLONASS slot 5
+            TextBuffer text = mTexts[position].begin().append("\tPRN: ")
+                    .append(Constellation.getLetter(Constellation.ofKey(key)))
+                    .append(Constellation.svidOfKey(key))
+                    .append("\tSNR: ").append(mModel.getSnr(key), 1);
+            if (mModel.isUsed(key)) {
+                text.append("\tused");
+            }
+            if (text.commit()) {
+                mRows[position].setText(text.getChars(), 0, text.length());
+            }
+        }
+        for (int position = count; position < mShownRows; position++) {
+            mRows[position].setVisibility(View.GONE);
+        }
+        for (int position = mShownRows; position < count; position++) {
+            mRows[position].setVisibility(View.VISIBLE);
+        }
+        mShownRows = count;
+        mModel.markApplied();
+    }
+
+    private void createRow() {
+        Context context = mContainer.getContext();
+        TextView row = new TextView(context);
+        row.setTextSize(TypedValue.COMPLEX_UNIT_PX, mTextSize);
+        row.setPadding(mIndent, 0, 0, 0);
+        row.setVisibility(View.GONE);
+        mContainer.addView(row);
+        mRows[mCreatedRows] = row;
+        mTexts[mCreatedRows] = new TextBuffer(32);
+        mCreatedRows++;
+    }
+}
@@ -0,0 +1,202 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+/**
+ * Rows of the live PRN/SNR table.
+ *
+ * Every satellite has a fixed row slot at its {@link Constellation} key, so a row keeps its
+ * identity from fix to fix. Each update compares the new satellites with the rows and flags only
+ * the rows whose presence, SNR (to a tenth of a dB-Hz) or used-in-fix flag changed, plus whether
+ * the display order changed. Flags accumulate over updates until {@link #markApplied()}, so a UI
+ * that skips fixes still sees every change. The order is kept sorted by satellite, i.e. by
+ * constellation and then by number, or by SNR with an insertion sort, which is linear when the
+ * order barely changes between fixes. Has no Android dependencies and allocates nothing after
+ * construction.
+ */
+public class PrnTableModel {
+
+    public static final int SORT_BY_PRN = 0;
+    public static final int SORT_BY_SNR = 1;
+
+    private final int mMaxKey;
+    private final boolean[] mPresent;
+    private final int[] mSnrTenths;
+    private final boolean[] mUsed;
+    private final boolean[] mChanged;
+    private final boolean[] mSeen;
+
+    private final int[] mOrder;
+    private final int[] mPreviousOrder;
+    private int mRowCount = 0;
+    private boolean mOrderChanged = false;
+    private int mSortOrder = SORT_BY_PRN;
+
+    /**
+     * @param maxKey highest satellite key shown, usually {@link Constellation#MAX_KEY}
+     */
+    public PrnTableModel(int maxKey) {
+        mMaxKey = maxKey;
+        mPresent = new boolean[maxKey + 1];
+        mSnrTenths = new int[maxKey + 1];
+        mUsed = new boolean[maxKey + 1];
+        mChanged = new boolean[maxKey + 1];
+        mSeen = new boolean[maxKey + 1];
+        mOrder = new int[maxKey];
+        mPreviousOrder = new int[maxKey];
+    }
+
+    public int getMaxKey() {
+        return mMaxKey;
+    }
+
+    public int getSortOrder() {
+        return mSortOrder;
+    }
+
+    /**
+     * Sorts the rows by ascending key or by descending SNR, ties by key.
+     */
+    public void setSortOrder(int sortOrder) {
+        if (sortOrder != SORT_BY_PRN && sortOrder != SORT_BY_SNR) {
+            throw new IllegalArgumentException("Unknown sort order " + sortOrder);
+        }
+        if (sortOrder != mSortOrder) {
+            mSortOrder = sortOrder;
+            sort();
+        }
+    }
+
+    /**
+     * Applies the satellites of a fix.
+     *
+     * @return true if any row or the order changed
+     */
+    public boolean update(SatelliteSnapshot snapshot) {
+        boolean changed = false;
+        for (int i = 0; i < snapshot.getCount(); i++) {
+            int key = snapshot.getKey(i);
+            if (key <= 0 || key > mMaxKey || mSeen[key]) {
+                continue;
+            }
+            mSeen[key] = true;
+            int snr = Math.round(snapshot.getSnr(i) * 10);
+            boolean used = snapshot.isUsedInFix(i);
+            if (!mPresent[key] || mSnrTenths[key] != snr || mUsed[key] != used) {
+                mPresent[key] = true;
+                mSnrTenths[key] = snr;
+                mUsed[key] = used;
+                mChanged[key] = true;
+                changed = true;
+            }
+        }
+        for (int key = 1; key <= mMaxKey; key++) {
+            if (mPresent[key] && !mSeen[key]) {
+                mPresent[key] = false;
+                mChanged[key] = true;
+                changed = true;
+            }
+            mSeen[key] = false;
+        }
+        if (changed) {
+            sort();
+        }
+        return changed || mOrderChanged;
+    }
+
+    /**
+     * Number of rows, one per satellite in view.
+     */
+    public int getRowCount() {
+        return mRowCount;
+    }
+
+    /**
+     * Satellite key of the row shown at {@code position}.
+     */
+    public int getKeyAt(int position) {
+        return mOrder[position];
+    }
+
+    /**
+     * SNR of the row of {@code key}, rounded to a tenth of a dB-Hz.
+     */
+    public float getSnr(int key) {
+        return mSnrTenths[key] / 10f;
+    }
+
+    public boolean isUsed(int key) {
+        return mUsed[key];
+    }
+
+    /**
+     * True if the row of {@code key} appeared, disappeared or changed since {@link #markApplied()}.
+     */
+    public boolean isChanged(int key) {
+        return mChanged[key];
+    }
+
+    /**
+     * True if rows moved, appeared or disappeared since {@link #markApplied()}.
+     */
+    public boolean isOrderChanged() {
+        return mOrderChanged;
+    }
+
+    /**
+     * Clears the change flags once the UI has shown the current rows.
+     */
+    public void markApplied() {
+        for (int key = 1; key <= mMaxKey; key++) {
+            mChanged[key] = false;
+        }
+        mOrderChanged = false;
+    }
+
+    private void sort() {
+        int previousCount = mRowCount;
+        System.arraycopy(mOrder, 0, mPreviousOrder, 0, previousCount);
+
+        // Start from the previous order, so the insertion sort only moves rows that changed.
+        int count = 0;
+        for (int i = 0; i < previousCount; i++) {
+            int key = mPreviousOrder[i];
+            if (mPresent[key]) {
+                mOrder[count++] = key;
+                mSeen[key] = true;
+            }
+        }
+        for (int key = 1; key <= mMaxKey; key++) {
+            if (mPresent[key] && !mSeen[key]) {
+                mOrder[count++] = key;
+            }
+            mSeen[key] = false;
+        }
+        for (int i = 1; i < count; i++) {
+            int key = mOrder[i];
+            int j = i - 1;
+            while (j >= 0 && before(key, mOrder[j])) {
+                mOrder[j + 1] = mOrder[j];
+                j--;
+            }
+            mOrder[j + 1] = key;
+        }
+        mRowCount = count;
+
+        if (count != previousCount) {
+            mOrderChanged = true;
+        } else {
+            for (int i = 0; i < count; i++) {
+                if (mOrder[i] != mPreviousOrder[i]) {
+                    mOrderChanged = true;
+                    break;
+                }
+            }
+        }
+    }
+
+    private boolean before(int key, int other) {
+        if (mSortOrder == SORT_BY_SNR && mSnrTenths[key] != mSnrTenths[other]) {
+            return mSnrTenths[key] > mSnrTenths[other];
+        }
+        return key < other;
+    }
+}
@@ -0,0 +1,38 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+/**
+ * State handed from an activity instance to the one recreated after a configuration change.
+ *
+ * Retained through {@code onRetainCustomNonConfigurationInstance}, so nothing is copied or
+ * recomputed: the {@link FixProcessor} keeps running with its {@link FixAnalyzer}, whose SNR
+ * history, statistics and detector window carry on, and the models behind the PRN table and the
+ * sky plot are reused as they are. Only the views and the callbacks are rebuilt. Does not survive
+ * the process; the saved instance state still covers that.
+ */
+public class RetainedState {
+
+    public final FixProcessor fixProcessor;
+    public final PrnTableModel prnTableModel;
+    public final SatelliteSnapshot snapshot;
+    public final SatelliteTrails trails;
+    public final LocationRateController rateController;
+    public final boolean snrMode;
+    public final int totalSatellite;
+    public final int totalSatelliteUsed;
+    public final float signalAccuracy;
+
+    public RetainedState(FixProcessor fixProcessor, PrnTableModel prnTableModel,
+            SatelliteSnapshot snapshot, SatelliteTrails trails,
+            LocationRateController rateController, boolean snrMode, int totalSatellite,
+            int totalSatelliteUsed, float signalAccuracy) {
+        this.fixProcessor = fixProcessor;
+        this.prnTableModel = prnTableModel;
+        this.snapshot = snapshot;
+        this.trails = trails;
+        this.rateController = rateController;
+        this.snrMode = snrMode;
+        this.totalSatellite = totalSatellite;
+        this.totalSatelliteUsed = totalSatelliteUsed;
+        this.signalAccuracy = signalAccuracy;
+    }
+}
@@ -0,0 +1,190 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+/**
+ * Satellites of one fix.
+ *
+ * Stores the satellite list as parallel primitive arrays (struct of arrays) sized once at
+ * construction, so a snapshot can be refilled for every fix without allocating. Each satellite
+ * keeps the PRN it was reported with and gets its {@link Constellation} and key on the way in.
+ * The satellites in view, in use and per constellation are counted while it is filled, so
+ * readers never walk the list for them.
+ */
+public class SatelliteSnapshot {
+
+    private final int[] mPrn;
+    private final int[] mKey;
+    private final byte[] mConstellation;
+    private final float[] mSnr;
+    private final float[] mElevation;
+    private final float[] mAzimuth;
+    private final boolean[] mUsedInFix;
+
+    private long mTimestamp = 0;
+    private float mAccuracy = Float.NaN;
+    private int mCount = 0;
+    private int mUsedCount = 0;
+    private final int[] mConstellationCount = new int[Constellation.COUNT];
+
+    /**
+     * @param capacity most satellites a single snapshot can hold
+     */
+    public SatelliteSnapshot(int capacity) {
+        mPrn = new int[capacity];
+        mKey = new int[capacity];
+        mConstellation = new byte[capacity];
+        mSnr = new float[capacity];
+        mElevation = new float[capacity];
+        mAzimuth = new float[capacity];
+        mUsedInFix = new boolean[capacity];
+    }
+
+    /**
+     * Empties the snapshot and stamps it with the time of the fix it is about to hold. The
+     * accuracy is reset to unknown.
+     */
+    public void clear(long timestamp) {
+        mTimestamp = timestamp;
+        mAccuracy = Float.NaN;
+        mCount = 0;
+        mUsedCount = 0;
+        for (int c = 0; c < Constellation.COUNT; c++) {
+            mConstellationCount[c] = 0;
+        }
+    }
+
+    /**
+     * Sets the accuracy, in meters, of the latest location at the time of the fix, or NaN if
+     * none is known. Only recorded with the fix; the spoof score takes the accuracy once per
+     * location, see {@link FixAnalyzer#addLocation(long, float)}.
+     */
+    public void setAccuracy(float accuracy) {
+        mAccuracy = accuracy;
+    }
+
+    /**
+     * Appends one satellite given by its {@code GpsStatus} PRN. Returns false, dropping the
+     * satellite, if the snapshot is full.
+     */
+    public boolean add(int prn, float snr, float elevation, float azimuth, boolean usedInFix) {
+        if (mCount == mPrn.length) {
+            return false;
+        }
+        int constellation = Constellation.of(prn);
+        mPrn[mCount] = prn;
+        mKey[mCount] = Constellation.key(prn);
+        mConstellation[mCount] = (byte) constellation;
+        mSnr[mCount] = snr;
+        mElevation[mCount] = elevation;
+        mAzimuth[mCount] = azimuth;
+        mUsedInFix[mCount] = usedInFix;
+        mCount++;
+        if (usedInFix) {
+            mUsedCount++;
+        }
+        if (constellation != Constellation.UNKNOWN) {
+            mConstellationCount[constellation]++;
+        }
+        return true;
+    }
+
+    /**
+     * Replaces the content of this snapshot with a copy of {@code other}.
+     */
+    public void copyFrom(SatelliteSnapshot other) {
+        int count = Math.min(other.mCount, mPrn.length);
+        System.arraycopy(other.mPrn, 0, mPrn, 0, count);
+        System.arraycopy(other.mKey, 0, mKey, 0, count);
+        System.arraycopy(other.mConstellation, 0, mConstellation, 0, count);
+        System.arraycopy(other.mSnr, 0, mSnr, 0, count);
+        System.arraycopy(other.mElevation, 0, mElevation, 0, count);
+        System.arraycopy(other.mAzimuth, 0, mAzimuth, 0, count);
+        System.arraycopy(other.mUsedInFix, 0, mUsedInFix, 0, count);
+        mTimestamp = other.mTimestamp;
+        mAccuracy = other.mAccuracy;
+        mCount = count;
+        mUsedCount = other.mUsedCount;
+        System.arraycopy(other.mConstellationCount, 0, mConstellationCount, 0,
+                Constellation.COUNT);
+        if (count < other.mCount) {
+            mUsedCount = 0;
+            for (int c = 0; c < Constellation.COUNT; c++) {
+                mConstellationCount[c] = 0;
+            }
+            for (int i = 0; i < count; i++) {
+                if (mUsedInFix[i]) {
+                    mUsedCount++;
+                }
+                if (mConstellation[i] != Constellation.UNKNOWN) {
+                    mConstellationCount[mConstellation[i]]++;
+                }
+            }
+        }
+    }
+
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+
+    public float getAccuracy() {
+        return mAccuracy;
+    }
+
+    /**
+     * Number of satellites in view.
+     */
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * Number of satellites used in the fix.
+     */
+    public int getUsedCount() {
+        return mUsedCount;
+    }
+
+    /**
+     * Number of satellites in view of one constellation.
+     */
+    public int getCount(int constellation) {
+        return mConstellationCount[constellation];
+    }
+
+    public int getCapacity() {
+        return mPrn.length;
+    }
+
+    public int getPrn(int index) {
+        return mPrn[index];
+    }
+
+    /**
+     * {@link Constellation} key of a satellite, 0 if its constellation is unknown.
+     */
+    public int getKey(int index) {
+        return mKey[index];
+    }
+
+    /**
+     * Constellation of a satellite, or {@link Constellation#UNKNOWN}.
+     */
+    public int getConstellation(int index) {
+        return mConstellation[index];
+    }
+
+    public float getSnr(int index) {
+        return mSnr[index];
+    }
+
+    public float getElevation(int index) {
+        return mElevation[index];
+    }
+
+    public float getAzimuth(int index) {
+        return mAzimuth[index];
+    }
+
+    public boolean isUsedInFix(int index) {
+        return mUsedInFix[index];
+    }
+}
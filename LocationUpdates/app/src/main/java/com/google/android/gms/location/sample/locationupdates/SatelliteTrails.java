@@ -0,0 +1,108 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+/**
+ * Recent sky positions of every satellite, drawn as trails by {@link SatelliteView} in SNR mode.
+ *
+ * Each satellite key owns a ring of its last {@link #LENGTH} positions on the unit sky plot, at
+ * least {@link #INTERVAL_MS} apart, in flat parallel arrays, so a trail covers the last half hour
+ * of a pass. The trail of a satellite is dropped once it has been out of view for
+ * {@link #ABSENCE_TIMEOUT_MS}, so that a status event that misses it does not cut it short. Kept
+ * apart from the view so that it survives configuration changes. Has no Android dependencies and
+ * must only be used from one thread.
+ */
+public class SatelliteTrails {
+
+    public static final int LENGTH = 30;
+    public static final long INTERVAL_MS = 60000;
+    public static final long ABSENCE_TIMEOUT_MS = 120000;
+
+    private final int mMaxKey;
+    private final float[] mX;
+    private final float[] mY;
+    private final float[] mSnr;
+    private final int[] mHead;
+    private final int[] mCount;
+    private final long[] mTime;
+    private final long[] mLastSeen;
+
+    /**
+     * @param maxKey highest satellite key
+     */
+    public SatelliteTrails(int maxKey) {
+        mMaxKey = maxKey;
+        mX = new float[(maxKey + 1) * LENGTH];
+        mY = new float[(maxKey + 1) * LENGTH];
+        mSnr = new float[(maxKey + 1) * LENGTH];
+        mHead = new int[maxKey + 1];
+        mCount = new int[maxKey + 1];
+        mTime = new long[maxKey + 1];
+        mLastSeen = new long[maxKey + 1];
+    }
+
+    public int getMaxKey() {
+        return mMaxKey;
+    }
+
+    /**
+     * Appends the current points, given as parallel arrays, to the trails of their satellites and
+     * drops the trails of satellites that were not among the points for longer than
+     * {@link #ABSENCE_TIMEOUT_MS}. Points with key 0 are skipped.
+     *
+     * @param now time of the points in ms, on any monotonic clock
+     */
+    public void update(long now, int[] keys, float[] x, float[] y, float[] snr, int count) {
+        for (int i = 0; i < count; i++) {
+            int key = keys[i];
+            if (key <= 0 || key > mMaxKey) {
+                continue;
+            }
+            mLastSeen[key] = now;
+            if (mCount[key] > 0 && now - mTime[key] < INTERVAL_MS) {
+                continue;
+            }
+            int slot = key * LENGTH + mHead[key];
+            mX[slot] = x[i];
+            mY[slot] = y[i];
+            mSnr[slot] = snr[i];
+            mHead[key] = (mHead[key] + 1) % LENGTH;
+            if (mCount[key] < LENGTH) {
+                mCount[key]++;
+            }
+            mTime[key] = now;
+        }
+        for (int key = 1; key <= mMaxKey; key++) {
+            if (mCount[key] > 0 && now - mLastSeen[key] > ABSENCE_TIMEOUT_MS) {
+                mCount[key] = 0;
+                mHead[key] = 0;
+            }
+        }
+    }
+
+    /**
+     * Number of positions in the trail of {@code key}.
+     */
+    public int getCount(int key) {
+        return mCount[key];
+    }
+
+    /**
+     * Slot of the {@code index}-th oldest position of the trail of {@code key}, for
+     * {@link #getX(int)}, {@link #getY(int)} and {@link #getSnr(int)}.
+     */
+    public int getSlot(int key, int index) {
+        int from = mHead[key] - mCount[key] + LENGTH;
+        return key * LENGTH + (from + index) % LENGTH;
+    }
+
+    public float getX(int slot) {
+        return mX[slot];
+    }
+
+    public float getY(int slot) {
+        return mY[slot];
+    }
+
+    public float getSnr(int slot) {
+        return mSnr[slot];
+    }
+}
@@ -5,15 +5,12 @@ import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
-import android.location.GpsSatellite;
 import android.util.AttributeSet;
 import android.util.DisplayMetrics;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.View;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * Created by Bing Xun on 12/21/2016.
  */
@@ -27,10 +24,26 @@ public class SatelliteView extends View {
     private final static float SAT_TEXT_SIZE = 16;
     private final static int NUM_AXIS_RADIUS = 3;
     private final static String LABEL_NORTH = "N";
+    private final static int MAX_KEY = Constellation.MAX_KEY;
+    private final static int MAX_POINTS = 128;
+    private final static int AZIMUTH_STEPS = 360;
+
+    /**
+     * SNR mode: upper SNR bound of each color band, in dB-Hz, and the band colors
+     */
+    private final static float[] SNR_BAND_LIMITS = { 20, 30, 40, Float.MAX_VALUE };
+    private final static int[] SNR_BAND_COLORS = {
+            Color.RED, Color.rgb(255, 140, 0), Color.rgb(200, 180, 0), Color.rgb(0, 160, 0)
+    };
+    private final static float TRAIL_WIDTH = 2;
 
     private Bitmap mBitmapAxis = null;
+    private final Canvas mCanvasAxis = new Canvas();
     private Paint mPaintCircle = null;
     private Paint mPaintText = null;
+    private Paint mPaintAxisLine = null;
+    private Paint mPaintAxisCircle = null;
+    private Paint mPaintAxisText = null;
 
     private float mDensity = 0;
 
@@ -40,7 +53,56 @@ public class SatelliteView extends View {
     private float mCompassRadius = 0;
     private float mSatRadius = 0;
 
-    private List<SatellitePoint> mList = new ArrayList<SatellitePoint>();
+    /**
+     * satellite points as parallel arrays, refilled in place by setList; satellites are
+     * identified by their Constellation key
+     */
+    private final int[] mPointKey = new int[MAX_POINTS];
+    private final int[] mPointPrn = new int[MAX_POINTS];
+    private final float[] mPointX = new float[MAX_POINTS];
+    private final float[] mPointY = new float[MAX_POINTS];
+    private final float[] mPointSnr = new float[MAX_POINTS];
+    private int mPointCount = 0;
+
+    /**
+     * cos and sin of (270 + azimuth) for every whole degree of azimuth
+     */
+    private final static float[] AZIMUTH_COS = new float[AZIMUTH_STEPS];
+    private final static float[] AZIMUTH_SIN = new float[AZIMUTH_STEPS];
+
+    static {
+        for (int i = 0; i < AZIMUTH_STEPS; i++) {
+            double azimuth = (270 + i) * DEG_TO_RAD;
+            AZIMUTH_COS[i] = (float) Math.cos(azimuth);
+            AZIMUTH_SIN[i] = (float) Math.sin(azimuth);
+        }
+    }
+
+    /**
+     * SNR mode: recent positions of every satellite, replaced by setTrails when the activity is
+     * recreated
+     */
+    private boolean mSnrMode = false;
+    private SatelliteTrails mTrails = new SatelliteTrails(MAX_KEY);
+
+    /**
+     * SNR mode: screen coordinates batched per color band, so a frame takes one drawLines and one
+     * drawPoints call per band however long the trails are
+     */
+    private final float[][] mBandPoints = new float[SNR_BAND_LIMITS.length][MAX_POINTS * 2];
+    private final float[][] mBandLines =
+            new float[SNR_BAND_LIMITS.length][MAX_POINTS * (SatelliteTrails.LENGTH - 1) * 4];
+    private final int[] mBandPointCount = new int[SNR_BAND_LIMITS.length];
+    private final int[] mBandLineCount = new int[SNR_BAND_LIMITS.length];
+    private final Paint[] mPaintBandPoint = new Paint[SNR_BAND_LIMITS.length];
+    private final Paint[] mPaintBandLine = new Paint[SNR_BAND_LIMITS.length];
+
+    /**
+     * satellite labels such as G12 or R5 and their half widths, indexed by key and created on
+     * first use
+     */
+    private final String[] mLabels = new String[MAX_KEY + 1];
+    private final float[] mLabelHalfWidth = new float[MAX_KEY + 1];
 
 
     /**
@@ -48,7 +110,6 @@ public class SatelliteView extends View {
      */
     public SatelliteView(Context context, AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
-        initView(context);
     }
 
     /**
@@ -56,7 +117,6 @@ public class SatelliteView extends View {
      */
     public SatelliteView(Context context, AttributeSet attrs) {
         super(context, attrs);
-        initView(context);
     }
 
     /**
@@ -64,13 +124,17 @@ public class SatelliteView extends View {
      */
     public SatelliteView(Context context) {
         super(context);
-        initView(context);
     }
 
     /**
-     * draw round satellite
+     * draw round satellite; the paints are created on the first layout rather than in the
+     * constructor, so inflating the layout stays cheap and the font metrics are only loaded for
+     * a view that is shown
      */
-    private void initView(Context context) {
+    private void initPaints() {
+        if (mPaintText != null) {
+            return;
+        }
         getScaledDensity(); //call method
         mPaintCircle = new Paint(); //create Paint obj
         mPaintCircle.setStyle(Paint.Style.STROKE); //set style to stroke
@@ -79,6 +143,45 @@ public class SatelliteView extends View {
         mPaintText.setTextSize(SAT_TEXT_SIZE * mDensity); //set the prn no. inside the circle
         Paint.FontMetrics metrics = mPaintText.getFontMetrics(); //call fontmetrics
         mTextHalfHeight = (metrics.ascent + metrics.descent) / 2; //uses ascent and descent to put the prn no. in the middle of the circle
+        mPaintAxisLine = new Paint();
+        mPaintAxisCircle = new Paint();
+        mPaintAxisCircle.setStyle(Paint.Style.STROKE);
+        mPaintAxisText = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mPaintAxisText.setTextSize(AXIS_TEXT_SIZE * mDensity);
+        for (int band = 0; band < SNR_BAND_LIMITS.length; band++) {
+            Paint point = new Paint(Paint.ANTI_ALIAS_FLAG);
+            point.setColor(SNR_BAND_COLORS[band]);
+            point.setStrokeCap(Paint.Cap.ROUND); //drawPoints then draws filled discs
+            mPaintBandPoint[band] = point;
+            Paint line = new Paint(Paint.ANTI_ALIAS_FLAG);
+            line.setColor(SNR_BAND_COLORS[band]);
+            line.setStrokeWidth(TRAIL_WIDTH * mDensity);
+            mPaintBandLine[band] = line;
+        }
+    }
+
+    /**
+     * switch between the plain sky plot and the SNR-colored one with trails
+     */
+    public void setSnrMode(boolean snrMode) {
+        mSnrMode = snrMode;
+        invalidate();
+    }
+
+    public boolean isSnrMode() {
+        return mSnrMode;
+    }
+
+    public SatelliteTrails getTrails() {
+        return mTrails;
+    }
+
+    /**
+     * keep drawing trails that were collected by an earlier instance of the view
+     */
+    public void setTrails(SatelliteTrails trails) {
+        mTrails = trails;
+        invalidate();
     }
 
     /**
@@ -89,103 +192,219 @@ public class SatelliteView extends View {
         mDensity = metrics.scaledDensity; //scale the font size display = 1.5
         return mDensity;
     }
+    /**
+     * the compass only depends on the view size, so it is rebuilt here and reused across focus
+     * changes; a bitmap rather than a Picture because drawPicture is not hardware accelerated
+     * before API 23
+     */
     @Override
-    public void onWindowFocusChanged( boolean hasFocus ) { //call when the phone window gain focus
-        int width = getWidth(); //get the width of the window 492
-        int height = getHeight(); //get the height of the window 454
+    protected void onSizeChanged(int width, int height, int oldWidth, int oldHeight) {
+        super.onSizeChanged(width, height, oldWidth, oldHeight);
+        initPaints();
         mCenterX = width / 2; //set origin centre point
         mCenterY = ( height + ( AXIS_TEXT_SIZE + AXIS_TEXT_MARGIN ) * mDensity ) / 2; //set centre of y axis as the height of the window
                                                                                       //(454 + (4 + 4) * 1.5) / 2
         mCompassRadius = (float) ( 0.95 * Math.min( mCenterX, mCenterY ) ); //0.95 * Min (492,454)   0.95*454 = 431.3
         mSatRadius = 12 * mDensity ; //12*1.5 = 18
-        initAxis( width, height ); //call method pass width = 492 and height = 454
+        for (Paint point : mPaintBandPoint) {
+            point.setStrokeWidth(2 * mSatRadius);
+        }
+        releaseAxis();
+        if (width > 0 && height > 0) {
+            initAxis(width, height);
+        }
     }
+
+    /**
+     * free the compass bitmap as soon as the view leaves the window
+     */
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        releaseAxis();
+    }
+
+    private void releaseAxis() {
+        if (mBitmapAxis != null) {
+            mCanvasAxis.setBitmap(null);
+            mBitmapAxis.recycle();
+            mBitmapAxis = null;
+        }
+    }
+
     /**
      * draw compass
      */
     private void initAxis(int width, int height) {
-        Paint paint_line = new Paint();
-        Paint paint_circle = new Paint();
-        paint_circle.setStyle(Paint.Style.STROKE);
-        Paint paint_text = new Paint(Paint.ANTI_ALIAS_FLAG);
-        paint_text.setTextSize(AXIS_TEXT_SIZE * mDensity);
-
         float line_x0 = mCenterX - mCompassRadius;
         float line_x1 = mCenterX + mCompassRadius;
         float line_y0 = mCenterY - mCompassRadius;
         float line_y1 = mCenterY + mCompassRadius;
-        float text_x = mCenterX - paint_text.measureText( LABEL_NORTH ) ;
+        float text_x = mCenterX - mPaintAxisText.measureText( LABEL_NORTH ) ;
         float text_y = line_y0 - ( AXIS_TEXT_MARGIN * mDensity );
         float div = mCompassRadius / NUM_AXIS_RADIUS;
 
         mBitmapAxis = Bitmap.createBitmap( width, height, Bitmap.Config.RGB_565 ); //bitmap describes how pixel is stored and display. Red 5 bits, Green 6 bits and Blue 5 bits
-        Canvas canvas = new Canvas();
+        Canvas canvas = mCanvasAxis;
         canvas.setBitmap(mBitmapAxis);
         canvas.drawColor(Color.WHITE);
-        canvas.drawText(LABEL_NORTH, text_x, text_y, paint_text);
-        canvas.drawLine(line_x0, mCenterY, line_x1, mCenterY, paint_line);
-        canvas.drawLine(mCenterX, line_y0, mCenterX, line_y1, paint_line);
+        canvas.drawText(LABEL_NORTH, text_x, text_y, mPaintAxisText);
+        canvas.drawLine(line_x0, mCenterY, line_x1, mCenterY, mPaintAxisLine);
+        canvas.drawLine(mCenterX, line_y0, mCenterX, line_y1, mPaintAxisLine);
         for (int i = 0; i < NUM_AXIS_RADIUS; i++) {
             float r = div * (i + 1); //draw number of rounds in the compass using for loop
-            canvas.drawCircle( mCenterX, mCenterY, r, paint_circle ); //draw the compass
+            canvas.drawCircle( mCenterX, mCenterY, r, mPaintAxisCircle ); //draw the compass
         }
     }
 
     @Override
     protected void onDraw(Canvas canvas){
 
+        initPaints(); //normally done by the first onSizeChanged already
+        if ( mBitmapAxis == null && getWidth() > 0 && getHeight() > 0 ) {
+            initAxis(getWidth(), getHeight()); //reattached after onDetachedFromWindow
+        }
         if ( mBitmapAxis != null ) {
             canvas.drawBitmap( mBitmapAxis, 0, 0, null );
         }
 
-        for ( int i = 0; i < mList.size(); i++ ) {
-            SatellitePoint point;
-            point = mList.get(i);
-            int getPrn = Integer.parseInt(point.name);
-            if (getPrn >0 && getPrn <= 32) {
-                float x = point.x * mCompassRadius + mCenterX;
-                float y = point.y * mCompassRadius + mCenterY;
-                float text_x = x - mPaintText.measureText(point.name) / 2;
+        if (mSnrMode) {
+            drawSnrPlot(canvas);
+            return;
+        }
+
+        for ( int i = 0; i < mPointCount; i++ ) {
+            int key = mPointKey[i];
+            if (key > 0) {
+                String label = getLabel(key);
+                float x = mPointX[i] * mCompassRadius + mCenterX;
+                float y = mPointY[i] * mCompassRadius + mCenterY;
+                float text_x = x - mLabelHalfWidth[key];
 
                 float text_y = y - mTextHalfHeight;
                 canvas.drawCircle(x, y, mSatRadius, mPaintCircle);
-                canvas.drawText(point.name, text_x, text_y, mPaintText);
+                canvas.drawText(label, text_x, text_y, mPaintText);
             }
             else
             {
-                System.out.println("Non GPS satellite detected! " + point.name);
+                DiagnosticsTrace.record(DiagnosticsTrace.LEVEL_VERBOSE,
+                        DiagnosticsTrace.EVENT_UNKNOWN_DRAWN, mPointPrn[i]);
             }
         }
 
     }
 
     /**
-     * setList
+     * SNR mode: trails as lines, then satellites as points, batched by color band, then labels
      */
-    public void setList( Iterable<GpsSatellite> list ) {
-        mList.clear();
-        for(GpsSatellite sat : list) {
-            mList.add( new SatellitePoint(sat) );
+    private void drawSnrPlot(Canvas canvas) {
+        for (int band = 0; band < SNR_BAND_LIMITS.length; band++) {
+            mBandPointCount[band] = 0;
+            mBandLineCount[band] = 0;
         }
-        invalidate();
+        SatelliteTrails trails = mTrails;
+        for (int key = 1; key <= MAX_KEY; key++) {
+            int count = trails.getCount(key);
+            if (count < 2) {
+                continue;
+            }
+            for (int k = 1; k < count; k++) {
+                int a = trails.getSlot(key, k - 1);
+                int b = trails.getSlot(key, k);
+                int band = getSnrBand(trails.getSnr(b));
+                float[] lines = mBandLines[band];
+                int n = mBandLineCount[band];
+                if (n + 4 > lines.length) {
+                    continue;
+                }
+                lines[n] = trails.getX(a) * mCompassRadius + mCenterX;
+                lines[n + 1] = trails.getY(a) * mCompassRadius + mCenterY;
+                lines[n + 2] = trails.getX(b) * mCompassRadius + mCenterX;
+                lines[n + 3] = trails.getY(b) * mCompassRadius + mCenterY;
+                mBandLineCount[band] = n + 4;
+            }
+        }
+        for (int i = 0; i < mPointCount; i++) {
+            if (mPointKey[i] > 0) {
+                int band = getSnrBand(mPointSnr[i]);
+                float[] points = mBandPoints[band];
+                int n = mBandPointCount[band];
+                points[n] = mPointX[i] * mCompassRadius + mCenterX;
+                points[n + 1] = mPointY[i] * mCompassRadius + mCenterY;
+                mBandPointCount[band] = n + 2;
+            }
+        }
+        for (int band = 0; band < SNR_BAND_LIMITS.length; band++) {
+            if (mBandLineCount[band] > 0) {
+                canvas.drawLines(mBandLines[band], 0, mBandLineCount[band], mPaintBandLine[band]);
+            }
+            if (mBandPointCount[band] > 0) {
+                canvas.drawPoints(mBandPoints[band], 0, mBandPointCount[band],
+                        mPaintBandPoint[band]);
+            }
+        }
+        for (int i = 0; i < mPointCount; i++) {
+            int key = mPointKey[i];
+            if (key > 0) {
+                float x = mPointX[i] * mCompassRadius + mCenterX;
+                float y = mPointY[i] * mCompassRadius + mCenterY;
+                canvas.drawText(getLabel(key), x - mLabelHalfWidth[key], y - mTextHalfHeight,
+                        mPaintText);
+            }
+        }
+    }
+
+    private static int getSnrBand(float snr) {
+        int band = 0;
+        while (snr >= SNR_BAND_LIMITS[band]) {
+            band++;
+        }
+        return band;
     }
 
     /**
-     * class SatellitePoint
+     * setList from the satellite snapshot of a fix; does not invalidate, the caller schedules the
+     * redraw
      */
-    private class SatellitePoint {
-        public String name = "";
-        public float x = 0;
-        public float y = 0;
+    public void setList( SatelliteSnapshot snapshot ) {
+        mPointCount = Math.min(snapshot.getCount(), MAX_POINTS);
+        for (int i = 0; i < mPointCount; i++) {
+            setPoint(i, snapshot.getKey(i), snapshot.getPrn(i), snapshot.getSnr(i),
+                    snapshot.getElevation(i), snapshot.getAzimuth(i));
+        }
+        mTrails.update(SystemClock.uptimeMillis(), mPointKey, mPointX, mPointY, mPointSnr,
+                mPointCount);
+    }
 
-        public SatellitePoint(GpsSatellite sat)
-        {
-            name = Integer.toString( sat.getPrn() );
-                float r = (90 - sat.getElevation()) / 90;
-                double azimuth = (270 + sat.getAzimuth()) * DEG_TO_RAD;
-                x = r * (float) Math.cos(azimuth);
-                y = r * (float) Math.sin(azimuth);
+    /**
+     * project one satellite onto the unit sky plot, zenith at the centre and north up
+     */
+    private void setPoint(int index, int key, int prn, float snr, float elevation,
+            float azimuth) {
+        float r = (90 - elevation) / 90;
+        int step = Math.round(azimuth) % AZIMUTH_STEPS;
+        if (step < 0) {
+            step += AZIMUTH_STEPS;
+        }
+        mPointKey[index] = key;
+        mPointPrn[index] = prn;
+        mPointSnr[index] = snr;
+        mPointX[index] = r * AZIMUTH_COS[step];
+        mPointY[index] = r * AZIMUTH_SIN[step];
+    }
+
+    /**
+     * cached label of a satellite: constellation letter and number within the constellation
+     */
+    private String getLabel(int key) {
+        String label = mLabels[key];
+        if (label == null) {
+            label = Constellation.getLetter(Constellation.ofKey(key))
+                    + Integer.toString(Constellation.svidOfKey(key));
+            mLabels[key] = label;
+            mLabelHalfWidth[key] = mPaintText.measureText(label) / 2;
         }
+        return label;
     }
 
     /**
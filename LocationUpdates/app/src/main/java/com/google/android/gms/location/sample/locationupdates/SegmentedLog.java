@@ -0,0 +1,479 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Size-capped log kept as a directory of rotating segments.
+ *
+ * The writer appends to one open segment, a plain file named after its start time, and asks
+ * {@link #isRotationDue(long, long, long)} whether to close it once it is large or old enough.
+ * Closed segments are gzip compressed on a background thread, and the oldest closed segments are
+ * deleted while all segments together take more than the byte budget. A manifest lists every
+ * segment with its time range and size, so {@link #getSegments(long, long)} finds the segments
+ * covering a time window without opening any of them. The manifest is rewritten through a
+ * temporary file and a rename, so a crash leaves either the old or the new one; a segment still
+ * open in it is closed and compressed on the next start. I/O failures are counted and passed to
+ * the {@link ErrorListener}, if any, rather than thrown, so that logging never stops the caller.
+ * Has no Android dependencies and is thread-safe.
+ */
+public class SegmentedLog {
+
+    private static final String TAG = "SegmentedLog";
+
+    static final String MANIFEST_NAME = "manifest";
+    static final String COMPRESSED_EXTENSION = ".gz";
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+
+    /** End time of the open segment. */
+    public static final long OPEN = Long.MAX_VALUE;
+
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+    /**
+     * Receives the I/O failures of the log and of its writer, on the thread they happened on.
+     */
+    public interface ErrorListener {
+        /**
+         * @param cause the exception behind the failure, or null if there was none
+         */
+        void onError(String message, IOException cause);
+    }
+
+    /**
+     * One segment: its file and the times of its first and last line, in ms since the epoch.
+     */
+    public static class Segment {
+        private final File mFile;
+        private final long mStart;
+        private final long mEnd;
+        private final long mBytes;
+
+        Segment(File file, long start, long end, long bytes) {
+            mFile = file;
+            mStart = start;
+            mEnd = end;
+            mBytes = bytes;
+        }
+
+        public File getFile() {
+            return mFile;
+        }
+
+        public long getStart() {
+            return mStart;
+        }
+
+        /**
+         * Time of the last line, or {@link #OPEN} while the segment is being written.
+         */
+        public long getEnd() {
+            return mEnd;
+        }
+
+        /**
+         * Size on disk when the manifest was last written; grows while the segment is open.
+         */
+        public long getBytes() {
+            return mBytes;
+        }
+
+        public boolean isCompressed() {
+            return mFile.getName().endsWith(COMPRESSED_EXTENSION);
+        }
+    }
+
+    private final File mDirectory;
+    private final String mPrefix;
+    private final String mExtension;
+    private final long mMaxSegmentBytes;
+    private final long mMaxSegmentAgeMillis;
+    private final long mMaxTotalBytes;
+    private final ExecutorService mCompressor;
+    private final ErrorListener mErrorListener;
+    private final AtomicInteger mErrorCount = new AtomicInteger();
+
+    // Oldest first. Guarded by this.
+    private final ArrayList<Segment> mSegments = new ArrayList<Segment>();
+
+    /**
+     * Reads the manifest, closing and compressing a segment left open by a previous run. Does file
+     * I/O, so should not be called on the main thread.
+     *
+     * @param directory           directory of the segments and the manifest, created if missing
+     * @param prefix              segment names are {@code prefix-<start time><extension>}
+     * @param maxSegmentBytes     size at which the open segment is closed
+     * @param maxSegmentAgeMillis age at which the open segment is closed
+     * @param maxTotalBytes       budget for all segments, the open one included
+     */
+    public SegmentedLog(File directory, String prefix, String extension, long maxSegmentBytes,
+            long maxSegmentAgeMillis, long maxTotalBytes) {
+        this(directory, prefix, extension, maxSegmentBytes, maxSegmentAgeMillis, maxTotalBytes,
+                null);
+    }
+
+    /**
+     * Like {@link #SegmentedLog(File, String, String, long, long, long)}, and reports failures,
+     * including those while reading the manifest, to {@code errorListener}.
+     */
+    public SegmentedLog(File directory, String prefix, String extension, long maxSegmentBytes,
+            long maxSegmentAgeMillis, long maxTotalBytes, ErrorListener errorListener) {
+        mErrorListener = errorListener;
+        mDirectory = directory;
+        mPrefix = prefix;
+        mExtension = extension;
+        mMaxSegmentBytes = maxSegmentBytes;
+        mMaxSegmentAgeMillis = maxSegmentAgeMillis;
+        mMaxTotalBytes = maxTotalBytes;
+        mCompressor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, TAG);
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            reportError("Could not create " + directory, null);
+        }
+        synchronized (this) {
+            readManifest();
+            for (int i = mSegments.size() - 1; i >= 0; i--) {
+                Segment segment = mSegments.get(i);
+                if (segment.getEnd() == OPEN) {
+                    File file = segment.getFile();
+                    if (file.length() == 0) {
+                        delete(file);
+                        mSegments.remove(i);
+                        continue;
+                    }
+                    segment = new Segment(file, segment.getStart(),
+                            Math.max(segment.getStart(), file.lastModified()), file.length());
+                    mSegments.set(i, segment);
+                }
+                if (!segment.isCompressed()) {
+                    compressLater(segment);
+                }
+            }
+            enforceBudget();
+            writeManifest();
+        }
+    }
+
+    /**
+     * Whether a segment opened at {@code start} that holds {@code bytes} should be closed at
+     * {@code now}.
+     */
+    public boolean isRotationDue(long start, long bytes, long now) {
+        return bytes >= mMaxSegmentBytes || now - start >= mMaxSegmentAgeMillis;
+    }
+
+    /**
+     * Creates a new open segment starting at {@code now} and returns its file. The previous
+     * segment must have been closed.
+     */
+    public synchronized File openSegment(long now) {
+        File file = newSegmentFile(now);
+        mSegments.add(new Segment(file, now, OPEN, 0));
+        enforceBudget();
+        writeManifest();
+        return file;
+    }
+
+    /**
+     * Closes the open segment, whose last line was written at {@code end}, and queues it for
+     * compression.
+     */
+    public synchronized void closeSegment(long end) {
+        for (int i = mSegments.size() - 1; i >= 0; i--) {
+            Segment segment = mSegments.get(i);
+            if (segment.getEnd() == OPEN) {
+                File file = segment.getFile();
+                if (file.length() == 0) {
+                    // Nothing was written, so there is nothing to keep.
+                    delete(file);
+                    mSegments.remove(i);
+                } else {
+                    segment = new Segment(file, segment.getStart(),
+                            Math.max(segment.getStart(), end), file.length());
+                    mSegments.set(i, segment);
+                    compressLater(segment);
+                }
+                break;
+            }
+        }
+        enforceBudget();
+        writeManifest();
+    }
+
+    /**
+     * Moves a file written before the log was segmented into the directory as a closed segment
+     * covering {@code start} to {@code end}, and queues it for compression.
+     */
+    public synchronized void adopt(File file, long start, long end) {
+        File target = newSegmentFile(start);
+        if (!file.renameTo(target)) {
+            reportError("Could not move " + file + " to " + target, null);
+            return;
+        }
+        Segment segment = new Segment(target, start, end, target.length());
+        // Keep the list ordered by start time; adopted files are normally the oldest.
+        int index = 0;
+        while (index < mSegments.size() && mSegments.get(index).getStart() <= start) {
+            index++;
+        }
+        mSegments.add(index, segment);
+        compressLater(segment);
+        enforceBudget();
+        writeManifest();
+    }
+
+    /**
+     * Segments with lines between {@code from} (inclusive) and {@code to} (exclusive), oldest
+     * first. A segment only holds lines within its time range, so no other segment needs to be
+     * read for that window. Open segments with {@link #open(File)}.
+     */
+    public synchronized List<Segment> getSegments(long from, long to) {
+        ArrayList<Segment> segments = new ArrayList<Segment>();
+        for (int i = 0; i < mSegments.size(); i++) {
+            Segment segment = mSegments.get(i);
+            if (segment.getStart() < to && segment.getEnd() >= from) {
+                segments.add(segment);
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Total size of the segments on disk, the open one included.
+     */
+    public synchronized long getTotalBytes() {
+        long total = 0;
+        for (int i = 0; i < mSegments.size(); i++) {
+            total += getSize(mSegments.get(i));
+        }
+        return total;
+    }
+
+    /**
+     * Reads a segment, decompressing it if it was compressed.
+     */
+    public static InputStream open(File segment) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(segment));
+        if (segment.getName().endsWith(COMPRESSED_EXTENSION)) {
+            try {
+                return new GZIPInputStream(in);
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+        return in;
+    }
+
+    /**
+     * Number of I/O failures so far, of the log and of its writer.
+     */
+    public int getErrorCount() {
+        return mErrorCount.get();
+    }
+
+    /**
+     * Counts a failure and passes it to the error listener. Also used by the writer of the
+     * segments.
+     */
+    void reportError(String message, IOException cause) {
+        mErrorCount.incrementAndGet();
+        if (mErrorListener != null) {
+            mErrorListener.onError(message, cause);
+        }
+    }
+
+    /**
+     * Waits for the queued compressions to finish, for a few seconds at most. Segments left
+     * uncompressed are compressed on the next start.
+     */
+    public void close() {
+        mCompressor.shutdown();
+        try {
+            mCompressor.awaitTermination(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Name for a segment starting at {@code start} that is not taken by a plain or compressed
+     * segment yet.
+     */
+    private File newSegmentFile(long start) {
+        String name = mPrefix + "-" + start;
+        File file = new File(mDirectory, name + mExtension);
+        for (int i = 1; file.exists()
+                || new File(file.getPath() + COMPRESSED_EXTENSION).exists(); i++) {
+            file = new File(mDirectory, name + "-" + i + mExtension);
+        }
+        return file;
+    }
+
+    private void compressLater(final Segment segment) {
+        mCompressor.execute(new Runnable() {
+            @Override
+            public void run() {
+                compress(segment);
+            }
+        });
+    }
+
+    /**
+     * Runs on the compressor thread. The segment is compressed without holding the lock, then
+     * swapped for its compressed copy unless it was deleted meanwhile.
+     */
+    private void compress(Segment segment) {
+        File source = segment.getFile();
+        File target = new File(source.getPath() + COMPRESSED_EXTENSION);
+        File temporary = new File(target.getPath() + TEMPORARY_EXTENSION);
+        try {
+            copyCompressed(source, temporary);
+        } catch (IOException e) {
+            reportError("Could not compress " + source, e);
+            delete(temporary);
+            return;
+        }
+        synchronized (this) {
+            int index = mSegments.indexOf(segment);
+            if (index < 0 || !temporary.renameTo(target)) {
+                delete(temporary);
+                return;
+            }
+            mSegments.set(index, new Segment(target, segment.getStart(), segment.getEnd(),
+                    target.length()));
+            delete(source);
+            enforceBudget();
+            writeManifest();
+        }
+    }
+
+    private static void copyCompressed(File source, File target) throws IOException {
+        InputStream in = new FileInputStream(source);
+        try {
+            OutputStream out = new GZIPOutputStream(new FileOutputStream(target));
+            try {
+                byte[] buffer = new byte[8192];
+                int count;
+                while ((count = in.read(buffer)) > 0) {
+                    out.write(buffer, 0, count);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Deletes the oldest closed segments until all of them fit in the byte budget. The open
+     * segment is never deleted, even if it alone exceeds the budget.
+     */
+    private void enforceBudget() {
+        long total = getTotalBytes();
+        while (total > mMaxTotalBytes && !mSegments.isEmpty()
+                && mSegments.get(0).getEnd() != OPEN) {
+            Segment oldest = mSegments.remove(0);
+            total -= getSize(oldest);
+            delete(oldest.getFile());
+        }
+    }
+
+    private static long getSize(Segment segment) {
+        return segment.getEnd() == OPEN ? segment.getFile().length() : segment.getBytes();
+    }
+
+    /**
+     * Loads the manifest, skipping malformed lines and segments whose file is gone.
+     */
+    private void readManifest() {
+        File manifest = new File(mDirectory, MANIFEST_NAME);
+        if (!manifest.exists()) {
+            return;
+        }
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(manifest), "UTF-8"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = line.split(",");
+                    if (fields.length != 4) {
+                        continue;
+                    }
+                    File file = new File(mDirectory, fields[0]);
+                    if (!file.exists()) {
+                        continue;
+                    }
+                    try {
+                        mSegments.add(new Segment(file, Long.parseLong(fields[1]),
+                                Long.parseLong(fields[2]), Long.parseLong(fields[3])));
+                    } catch (NumberFormatException e) {
+                        // Skip the line.
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            reportError("Could not read " + manifest, e);
+        }
+    }
+
+    /**
+     * Writes one {@code name,start,end,bytes} line per segment, oldest first.
+     */
+    private void writeManifest() {
+        File manifest = new File(mDirectory, MANIFEST_NAME);
+        File temporary = new File(mDirectory, MANIFEST_NAME + TEMPORARY_EXTENSION);
+        try {
+            Writer out = new OutputStreamWriter(new FileOutputStream(temporary), "UTF-8");
+            try {
+                for (int i = 0; i < mSegments.size(); i++) {
+                    Segment segment = mSegments.get(i);
+                    out.write(segment.getFile().getName() + "," + segment.getStart() + ","
+                            + segment.getEnd() + "," + segment.getBytes() + "\n");
+                }
+            } finally {
+                out.close();
+            }
+            if (!temporary.renameTo(manifest)) {
+                reportError("Could not replace " + manifest, null);
+            }
+        } catch (IOException e) {
+            reportError("Could not write " + temporary, e);
+        }
+    }
+
+    private void delete(File file) {
+        if (file.exists() && !file.delete()) {
+            reportError("Could not delete " + file, null);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
+
+/**
+ * Queryable store of every recorded fix.
+ *
+ * Three tables: {@code fixes} holds one row per fix with its statistics and verdict,
+ * {@code samples} one row per satellite of a fix, and {@code verdicts} one row per change of the
+ * detector state. Samples repeat the fix timestamp, so the covering index on (prn, timestamp,
+ * snr) answers "SNR history of PRN 12 in the last hour" from the index alone, without a join or
+ * a table lookup, however many weeks of data are stored. The database runs in write-ahead
+ * logging mode where available (API 11 and later), so the UI can query while
+ * {@link SessionDatabaseWriter} is inserting. PRNs use the {@code GpsStatus} numbering, see
+ * {@link Constellation}.
+ */
+public class SessionDatabase extends SQLiteOpenHelper {
+
+    static final String DATABASE_NAME = "sessions.db";
+    private static final int DATABASE_VERSION = 1;
+
+    static final String TABLE_FIXES = "fixes";
+    static final String TABLE_SAMPLES = "samples";
+    static final String TABLE_VERDICTS = "verdicts";
+
+    private static final String[] SCHEMA = {
+            "CREATE TABLE fixes ("
+                    + "_id INTEGER PRIMARY KEY, "
+                    + "session INTEGER NOT NULL, "
+                    + "timestamp INTEGER NOT NULL, "
+                    + "satellites INTEGER NOT NULL, "
+                    + "satellites_used INTEGER NOT NULL, "
+                    + "accuracy REAL, "
+                    + "mean_snr REAL, "
+                    + "coefficient_of_variation REAL, "
+                    + "spoof_score REAL, "
+                    + "verdict INTEGER NOT NULL)",
+            "CREATE INDEX fixes_timestamp ON fixes (timestamp)",
+            "CREATE TABLE samples ("
+                    + "fix_id INTEGER NOT NULL, "
+                    + "timestamp INTEGER NOT NULL, "
+                    + "prn INTEGER NOT NULL, "
+                    + "snr REAL NOT NULL, "
+                    + "elevation REAL, "
+                    + "azimuth REAL, "
+                    + "used_in_fix INTEGER NOT NULL)",
+            "CREATE INDEX samples_prn_timestamp ON samples (prn, timestamp, snr)",
+            "CREATE INDEX samples_timestamp ON samples (timestamp)",
+            "CREATE TABLE verdicts ("
+                    + "_id INTEGER PRIMARY KEY, "
+                    + "session INTEGER NOT NULL, "
+                    + "timestamp INTEGER NOT NULL, "
+                    + "verdict INTEGER NOT NULL, "
+                    + "spoof_score REAL)",
+            "CREATE INDEX verdicts_timestamp ON verdicts (timestamp)"
+    };
+
+    private static final String QUERY_SNR_HISTORY = "SELECT timestamp, snr FROM samples"
+            + " WHERE prn = ? AND timestamp >= ? AND timestamp < ? ORDER BY timestamp";
+    private static final String QUERY_FIXES = "SELECT timestamp, satellites, satellites_used,"
+            + " mean_snr, coefficient_of_variation, spoof_score, verdict FROM fixes"
+            + " WHERE timestamp >= ? AND timestamp < ? ORDER BY timestamp";
+    private static final String QUERY_VERDICTS = "SELECT timestamp, verdict, spoof_score"
+            + " FROM verdicts WHERE timestamp >= ? AND timestamp < ? ORDER BY timestamp";
+
+    private static SessionDatabase sInstance;
+
+    /**
+     * The app-wide instance. Opening it is deferred to the first query or write, which should not
+     * happen on the main thread.
+     */
+    public static synchronized SessionDatabase getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new SessionDatabase(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private SessionDatabase(Context context) {
+        this(context, DATABASE_NAME);
+    }
+
+    /**
+     * @param name database file name, or null for an in-memory database, as used by the tests
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    SessionDatabase(Context context, String name) {
+        super(context, name, null, DATABASE_VERSION);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            setWriteAheadLoggingEnabled(true);
+        }
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        for (String statement : SCHEMA) {
+            db.execSQL(statement);
+        }
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Only version 1 exists so far.
+    }
+
+    /**
+     * Turns on write-ahead logging on API 11 to 15, where the helper cannot do it itself.
+     */
+    @Override
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
+                && Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN && !db.isReadOnly()) {
+            db.enableWriteAheadLogging();
+        }
+    }
+
+    /**
+     * SNR samples of one satellite between {@code from} (inclusive) and {@code to} (exclusive), in
+     * ms since the epoch: columns timestamp and snr, oldest first. The caller closes the cursor.
+     */
+    public Cursor querySnrHistory(int prn, long from, long to) {
+        return getReadableDatabase().rawQuery(QUERY_SNR_HISTORY, new String[] {
+                Integer.toString(prn), Long.toString(from), Long.toString(to)
+        });
+    }
+
+    /**
+     * Fixes between {@code from} and {@code to}: columns timestamp, satellites, satellites_used,
+     * mean_snr, coefficient_of_variation, spoof_score and verdict.
+     */
+    public Cursor queryFixes(long from, long to) {
+        return getReadableDatabase().rawQuery(QUERY_FIXES, new String[] {
+                Long.toString(from), Long.toString(to)
+        });
+    }
+
+    /**
+     * Detector state changes between {@code from} and {@code to}: columns timestamp, verdict and
+     * spoof_score.
+     */
+    public Cursor queryVerdicts(long from, long to) {
+        return getReadableDatabase().rawQuery(QUERY_VERDICTS, new String[] {
+                Long.toString(from), Long.toString(to)
+        });
+    }
+}
@@ -0,0 +1,205 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import android.annotation.TargetApi;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
+import android.os.SystemClock;
+
+/**
+ * Batched writer of fixes into the {@link SessionDatabase}.
+ *
+ * Rows are inserted through statements compiled once, inside a transaction that stays open until
+ * the batch holds enough fixes or its first fix is old enough, so a fix costs a few row inserts
+ * and the journal is only synced once per batch. Fixes of an uncommitted batch are lost if the
+ * process dies; the binary session log still has them. Opening runs the retention cleanup, which
+ * is repeated after a commit once the prune interval has passed, so that a long session does not
+ * keep data past its retention either. The writer must be created off the main thread, and then
+ * only used from that thread.
+ */
+public class SessionDatabaseWriter {
+
+    private static final String INSERT_FIX = "INSERT INTO fixes (session, timestamp, satellites,"
+            + " satellites_used, accuracy, mean_snr, coefficient_of_variation, spoof_score,"
+            + " verdict) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_SAMPLE = "INSERT INTO samples (fix_id, timestamp, prn, snr,"
+            + " elevation, azimuth, used_in_fix) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_VERDICT = "INSERT INTO verdicts (session, timestamp,"
+            + " verdict, spoof_score) VALUES (?, ?, ?, ?)";
+
+    private final SQLiteDatabase mDb;
+    private final SQLiteStatement mInsertFix;
+    private final SQLiteStatement mInsertSample;
+    private final SQLiteStatement mInsertVerdict;
+    private final long mSession;
+    private final int mBatchFixes;
+    private final long mBatchIntervalMillis;
+    private final long mRetentionMillis;
+    private final long mPruneIntervalMillis;
+
+    private int mPendingFixes = 0;
+    private long mBatchStart;
+    private long mLastPrune;
+    private int mLastVerdict = -1;
+
+    /**
+     * @param session             session start in ms since the epoch, stored with every fix
+     * @param retentionMillis     fixes older than this are deleted on open and then periodically
+     * @param pruneIntervalMillis shortest time between two retention cleanups
+     * @param batchFixes          pending fix count that forces a commit
+     * @param batchIntervalMillis longest time a fix may stay uncommitted, checked on every append
+     *                            and by {@link #commitIfDue()}
+     */
+    public SessionDatabaseWriter(SessionDatabase database, long session, long retentionMillis,
+            long pruneIntervalMillis, int batchFixes, long batchIntervalMillis) {
+        mDb = database.getWritableDatabase();
+        mSession = session;
+        mBatchFixes = batchFixes;
+        mBatchIntervalMillis = batchIntervalMillis;
+        mRetentionMillis = retentionMillis;
+        mPruneIntervalMillis = pruneIntervalMillis;
+        deleteBefore(session - retentionMillis);
+        mLastPrune = SystemClock.elapsedRealtime();
+        mInsertFix = mDb.compileStatement(INSERT_FIX);
+        mInsertSample = mDb.compileStatement(INSERT_SAMPLE);
+        mInsertVerdict = mDb.compileStatement(INSERT_VERDICT);
+    }
+
+    /**
+     * Inserts one processed fix, and its verdict if the detector changed state, and commits the
+     * batch if it is due.
+     */
+    public void append(SatelliteSnapshot snapshot, FixResult result) {
+        if (mPendingFixes == 0) {
+            beginTransaction();
+            mBatchStart = SystemClock.elapsedRealtime();
+        }
+        long timestamp = snapshot.getTimestamp();
+
+        mInsertFix.bindLong(1, mSession);
+        mInsertFix.bindLong(2, timestamp);
+        mInsertFix.bindLong(3, snapshot.getCount());
+        mInsertFix.bindLong(4, snapshot.getUsedCount());
+        bindFloat(mInsertFix, 5, snapshot.getAccuracy());
+        mInsertFix.bindDouble(6, result.mean);
+        mInsertFix.bindDouble(7, result.coefficientOfVariation);
+        bindFloat(mInsertFix, 8, result.spoofScore);
+        mInsertFix.bindLong(9, result.verdict);
+        long fixId = mInsertFix.executeInsert();
+
+        for (int i = 0; i < snapshot.getCount(); i++) {
+            mInsertSample.bindLong(1, fixId);
+            mInsertSample.bindLong(2, timestamp);
+            mInsertSample.bindLong(3, snapshot.getPrn(i));
+            mInsertSample.bindDouble(4, snapshot.getSnr(i));
+            mInsertSample.bindDouble(5, snapshot.getElevation(i));
+            mInsertSample.bindDouble(6, snapshot.getAzimuth(i));
+            mInsertSample.bindLong(7, snapshot.isUsedInFix(i) ? 1 : 0);
+            mInsertSample.executeInsert();
+        }
+
+        if (result.verdict != mLastVerdict) {
+            mInsertVerdict.bindLong(1, mSession);
+            mInsertVerdict.bindLong(2, timestamp);
+            mInsertVerdict.bindLong(3, result.verdict);
+            bindFloat(mInsertVerdict, 4, result.spoofScore);
+            mInsertVerdict.executeInsert();
+            mLastVerdict = result.verdict;
+        }
+
+        mPendingFixes++;
+        if (mPendingFixes >= mBatchFixes) {
+            commit();
+        } else {
+            commitIfDue();
+        }
+    }
+
+    /**
+     * Number of fixes inserted but not committed yet.
+     */
+    public int getPendingFixes() {
+        return mPendingFixes;
+    }
+
+    /**
+     * Commits the batch if its first fix has waited for the batch interval.
+     */
+    public void commitIfDue() {
+        if (mPendingFixes > 0
+                && SystemClock.elapsedRealtime() - mBatchStart >= mBatchIntervalMillis) {
+            commit();
+        }
+    }
+
+    /**
+     * Commits the pending fixes, if any, then runs the retention cleanup if the prune interval
+     * has passed since the last one.
+     */
+    public void commit() {
+        if (mPendingFixes == 0) {
+            return;
+        }
+        mPendingFixes = 0;
+        try {
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+        }
+        long now = SystemClock.elapsedRealtime();
+        if (now - mLastPrune >= mPruneIntervalMillis) {
+            mLastPrune = now;
+            deleteBefore(System.currentTimeMillis() - mRetentionMillis);
+        }
+    }
+
+    /**
+     * Commits the pending fixes and releases the statements. The database itself stays open.
+     */
+    public void close() {
+        try {
+            commit();
+        } finally {
+            mInsertFix.close();
+            mInsertSample.close();
+            mInsertVerdict.close();
+        }
+    }
+
+    /**
+     * Deletes the fixes, samples and verdicts older than {@code timestamp}, using the timestamp
+     * indexes.
+     */
+    private void deleteBefore(long timestamp) {
+        String[] args = { Long.toString(timestamp) };
+        beginTransaction();
+        try {
+            mDb.delete(SessionDatabase.TABLE_SAMPLES, "timestamp < ?", args);
+            mDb.delete(SessionDatabase.TABLE_FIXES, "timestamp < ?", args);
+            mDb.delete(SessionDatabase.TABLE_VERDICTS, "timestamp < ?", args);
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+        }
+    }
+
+    /**
+     * Starts a transaction that does not block readers of the write-ahead log.
+     */
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private void beginTransaction() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            mDb.beginTransactionNonExclusive();
+        } else {
+            mDb.beginTransaction();
+        }
+    }
+
+    private static void bindFloat(SQLiteStatement statement, int index, float value) {
+        if (Float.isNaN(value)) {
+            statement.bindNull(index);
+        } else {
+            statement.bindDouble(index, value);
+        }
+    }
+}
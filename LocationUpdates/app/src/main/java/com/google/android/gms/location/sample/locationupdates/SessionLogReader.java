@@ -0,0 +1,219 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reader for the binary session log written by {@link SessionLogWriter}.
+ *
+ * The file is memory-mapped and indexed once on open: the offset, timestamp, coefficient of
+ * variation and verdict of every record are kept in primitive arrays, so any record can then be
+ * decoded directly by index or looked up by time. A record cut short by a crash ends the index.
+ * Instances are not thread-safe.
+ */
+public class SessionLogReader {
+
+    private static final String CSV_HEADER =
+            "timestamp,prn,snr,elevation,azimuth,used_in_fix,coefficient_of_variation,verdict\n";
+
+    /** Verdict, coefficient of variation and accuracy that start every record body. */
+    private static final int FIXED_BODY_SIZE = 1 + 4 + 4;
+
+    private final RandomAccessFile mFile;
+    private final MappedByteBuffer mBuffer;
+    private final long mStartTime;
+
+    private int mCount = 0;
+    private int[] mOffsets = new int[256];
+    private long[] mTimestamps = new long[256];
+    private float[] mCoefficients = new float[256];
+    private byte[] mVerdicts = new byte[256];
+
+    public SessionLogReader(File file) throws IOException {
+        mFile = new RandomAccessFile(file, "r");
+        FileChannel channel = mFile.getChannel();
+        mBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        if (mBuffer.limit() < SessionLogWriter.HEADER_SIZE) {
+            close();
+            throw new IOException("Not a session log: " + file);
+        }
+        for (int i = 0; i < SessionLogWriter.MAGIC.length; i++) {
+            if (mBuffer.get(i) != SessionLogWriter.MAGIC[i]) {
+                close();
+                throw new IOException("Not a session log: " + file);
+            }
+        }
+        int version = mBuffer.get(SessionLogWriter.MAGIC.length);
+        if (version != SessionLogWriter.VERSION) {
+            close();
+            throw new IOException("Unsupported session log version " + version);
+        }
+        mStartTime = mBuffer.getLong(SessionLogWriter.MAGIC.length + 1);
+        buildIndex();
+    }
+
+    public long getStartTime() {
+        return mStartTime;
+    }
+
+    public int getRecordCount() {
+        return mCount;
+    }
+
+    public long getTimestamp(int index) {
+        checkIndex(index);
+        return mTimestamps[index];
+    }
+
+    public float getCoefficientOfVariation(int index) {
+        checkIndex(index);
+        return mCoefficients[index];
+    }
+
+    public int getVerdict(int index) {
+        checkIndex(index);
+        return mVerdicts[index];
+    }
+
+    /**
+     * Returns the index of the first record at or after {@code timestamp}, or the record count if
+     * there is none.
+     */
+    public int findRecord(long timestamp) {
+        int low = 0;
+        int high = mCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mTimestamps[mid] < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Decodes the satellites and location accuracy of one record into {@code out}. Satellites
+     * beyond the capacity of {@code out} are skipped.
+     */
+    public void read(int index, SatelliteSnapshot out) {
+        checkIndex(index);
+        int offset = mOffsets[index];
+        out.clear(mTimestamps[index]);
+        out.setAccuracy(mBuffer.getFloat(offset + 1 + 4));
+        mBuffer.position(offset + FIXED_BODY_SIZE);
+        int count = (int) readVarint();
+        int snr = 0;
+        for (int i = 0; i < count; i++) {
+            int prnAndUsed = (int) readVarint();
+            snr += unzigzag((int) readVarint());
+            int elevation = mBuffer.get();
+            int azimuth = (int) readVarint();
+            out.add(prnAndUsed >>> 1, snr / 10f, elevation, azimuth, (prnAndUsed & 1) != 0);
+        }
+    }
+
+    /**
+     * Writes every record as CSV, one row per satellite.
+     */
+    public void exportCsv(Writer out) throws IOException {
+        SatelliteSnapshot snapshot = new SatelliteSnapshot(256);
+        StringBuilder line = new StringBuilder(96);
+        out.write(CSV_HEADER);
+        for (int r = 0; r < mCount; r++) {
+            read(r, snapshot);
+            for (int i = 0; i < snapshot.getCount(); i++) {
+                line.setLength(0);
+                line.append(mTimestamps[r]).append(',')
+                        .append(snapshot.getPrn(i)).append(',')
+                        .append(snapshot.getSnr(i)).append(',')
+                        .append((int) snapshot.getElevation(i)).append(',')
+                        .append((int) snapshot.getAzimuth(i)).append(',')
+                        .append(snapshot.isUsedInFix(i) ? 1 : 0).append(',')
+                        .append(mCoefficients[r]).append(',')
+                        .append(mVerdicts[r]).append('\n');
+                out.write(line.toString());
+            }
+        }
+        out.flush();
+    }
+
+    public void close() throws IOException {
+        mFile.close();
+    }
+
+    private void buildIndex() {
+        int limit = mBuffer.limit();
+        long timestamp = mStartTime;
+        mBuffer.position(SessionLogWriter.HEADER_SIZE);
+        while (mBuffer.position() < limit) {
+            try {
+                timestamp += unzigzag(readVarint());
+                int length = (int) readVarint();
+                int offset = mBuffer.position();
+                if (length < FIXED_BODY_SIZE || offset + length > limit) {
+                    break;
+                }
+                if (mCount == mOffsets.length) {
+                    grow();
+                }
+                mOffsets[mCount] = offset;
+                mTimestamps[mCount] = timestamp;
+                mVerdicts[mCount] = mBuffer.get(offset);
+                mCoefficients[mCount] = mBuffer.getFloat(offset + 1);
+                mCount++;
+                mBuffer.position(offset + length);
+            } catch (RuntimeException e) {
+                // A varint ran past the end of the file.
+                break;
+            }
+        }
+    }
+
+    private void grow() {
+        int size = mOffsets.length * 2;
+        int[] offsets = new int[size];
+        long[] timestamps = new long[size];
+        float[] coefficients = new float[size];
+        byte[] verdicts = new byte[size];
+        System.arraycopy(mOffsets, 0, offsets, 0, mCount);
+        System.arraycopy(mTimestamps, 0, timestamps, 0, mCount);
+        System.arraycopy(mCoefficients, 0, coefficients, 0, mCount);
+        System.arraycopy(mVerdicts, 0, verdicts, 0, mCount);
+        mOffsets = offsets;
+        mTimestamps = timestamps;
+        mCoefficients = coefficients;
+        mVerdicts = verdicts;
+    }
+
+    private long readVarint() {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = mBuffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= mCount) {
+            throw new IndexOutOfBoundsException("index " + index + ", count " + mCount);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Binary session log.
+ *
+ * Appends one compact record per fix: the satellites of the fix with their SNR, elevation,
+ * azimuth and used-in-fix flag, plus the coefficient of variation and the spoof verdict. The file
+ * starts with a header holding the session start time; each record then stores
+ *
+ * <pre>
+ * varint  zigzag timestamp delta to the previous record, in ms
+ * varint  body length in bytes
+ * byte    verdict, a SpoofStateMachine state
+ * int     coefficient of variation, float bits, big endian
+ * int     location accuracy in m, float bits, big endian, NaN if unknown
+ * varint  satellite count
+ * per satellite:
+ *   varint  prn &lt;&lt; 1 | usedInFix
+ *   varint  zigzag SNR delta to the previous satellite, in tenths of dB-Hz
+ *   byte    elevation in degrees, signed
+ *   varint  azimuth in degrees
+ * </pre>
+ *
+ * The body length lets {@link SessionLogReader} index the file without decoding satellites.
+ * Every session gets its own log, so {@link #deleteOldLogs} keeps their number and size in check.
+ */
+public class SessionLogWriter {
+
+    static final byte[] MAGIC = {'S', 'N', 'R', 'L'};
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = MAGIC.length + 1 + 8;
+
+    private static final int MAX_SATELLITE_BYTES = 5 + 5 + 1 + 5;
+    private static final int MAX_FIXED_BODY_BYTES = 1 + 4 + 4 + 5;
+
+    private final OutputStream mOut;
+    private final byte[] mHead = new byte[10 + 5];
+    private byte[] mBody = new byte[MAX_FIXED_BODY_BYTES + 32 * MAX_SATELLITE_BYTES];
+    private long mLastTimestamp;
+
+    /**
+     * Creates {@code file}, overwriting it, and writes the header.
+     *
+     * @param startTime session start in ms since the epoch, the base of the first timestamp delta
+     */
+    public SessionLogWriter(File file, long startTime) throws IOException {
+        mOut = new BufferedOutputStream(new FileOutputStream(file));
+        mLastTimestamp = startTime;
+        byte[] header = new byte[HEADER_SIZE];
+        System.arraycopy(MAGIC, 0, header, 0, MAGIC.length);
+        header[MAGIC.length] = VERSION;
+        putLong(header, MAGIC.length + 1, startTime);
+        mOut.write(header);
+    }
+
+    /**
+     * Appends the record of one fix.
+     */
+    public void append(SatelliteSnapshot snapshot, float coefficientOfVariation, int verdict)
+            throws IOException {
+        int count = snapshot.getCount();
+        int needed = MAX_FIXED_BODY_BYTES + count * MAX_SATELLITE_BYTES;
+        if (mBody.length < needed) {
+            mBody = new byte[needed];
+        }
+
+        byte[] body = mBody;
+        int pos = 0;
+        body[pos++] = (byte) verdict;
+        pos = putFloat(body, pos, coefficientOfVariation);
+        pos = putFloat(body, pos, snapshot.getAccuracy());
+        pos = putVarint(body, pos, count);
+        int lastSnr = 0;
+        for (int i = 0; i < count; i++) {
+            int snr = Math.round(snapshot.getSnr(i) * 10);
+            int elevation = Math.round(snapshot.getElevation(i));
+            int azimuth = Math.round(snapshot.getAzimuth(i));
+            pos = putVarint(body, pos, snapshot.getPrn(i) << 1 | (snapshot.isUsedInFix(i) ? 1 : 0));
+            pos = putVarint(body, pos, zigzag(snr - lastSnr) & 0xFFFFFFFFL);
+            body[pos++] = (byte) Math.max(-90, Math.min(90, elevation));
+            pos = putVarint(body, pos, Math.max(0, azimuth));
+            lastSnr = snr;
+        }
+
+        long timestamp = snapshot.getTimestamp();
+        int head = putVarint(mHead, 0, zigzag(timestamp - mLastTimestamp));
+        head = putVarint(mHead, head, pos);
+        mOut.write(mHead, 0, head);
+        mOut.write(body, 0, pos);
+        mLastTimestamp = timestamp;
+    }
+
+    public void flush() throws IOException {
+        mOut.flush();
+    }
+
+    public void close() throws IOException {
+        mOut.close();
+    }
+
+    /**
+     * Deletes the oldest logs in {@code directory}, named {@code prefix<start time>extension},
+     * while there are more than {@code maxFiles} of them or they take more than {@code maxBytes}
+     * together. The newest log is always kept, so call this after creating the log of a new
+     * session.
+     *
+     * @return number of logs deleted
+     */
+    public static int deleteOldLogs(File directory, final String prefix, final String extension,
+            int maxFiles, long maxBytes) {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return getStartTime(name, prefix, extension) >= 0;
+            }
+        });
+        if (files == null) {
+            return 0;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long startA = getStartTime(a.getName(), prefix, extension);
+                long startB = getStartTime(b.getName(), prefix, extension);
+                return startA < startB ? -1 : startA == startB ? 0 : 1;
+            }
+        });
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        int deleted = 0;
+        for (int i = 0; i < files.length - 1; i++) {
+            if (files.length - i <= maxFiles && total <= maxBytes) {
+                break;
+            }
+            long length = files[i].length();
+            if (files[i].delete()) {
+                total -= length;
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Start time encoded in a log name, or -1 if {@code name} is not one.
+     */
+    private static long getStartTime(String name, String prefix, String extension) {
+        if (!name.startsWith(prefix) || !name.endsWith(extension)
+                || name.length() == prefix.length() + extension.length()) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(prefix.length(),
+                    name.length() - extension.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static int putVarint(byte[] buffer, int pos, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[pos++] = (byte) value;
+        return pos;
+    }
+
+    private static int putFloat(byte[] buffer, int pos, float value) {
+        int bits = Float.floatToIntBits(value);
+        buffer[pos++] = (byte) (bits >>> 24);
+        buffer[pos++] = (byte) (bits >>> 16);
+        buffer[pos++] = (byte) (bits >>> 8);
+        buffer[pos++] = (byte) bits;
+        return pos;
+    }
+
+    private static void putLong(byte[] buffer, int pos, long value) {
+        for (int i = 7; i >= 0; i--) {
+            buffer[pos + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+}
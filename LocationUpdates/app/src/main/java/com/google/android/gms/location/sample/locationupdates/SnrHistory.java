@@ -0,0 +1,79 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+/**
+ * Per-satellite SNR history.
+ *
+ * Holds the most recent SNR samples of every satellite in one preallocated {@code float[]}, used
+ * as a fixed-capacity ring buffer per satellite. Satellites are identified by their
+ * {@link Constellation} key, so every constellation has its own contiguous block of rings. Adding
+ * a sample overwrites the oldest one once the window is full, so nothing is allocated after
+ * construction and every access is O(1).
+ */
+public class SnrHistory {
+
+    private final int mMaxKey;
+    private final int mCapacity;
+    private final float[] mSamples;
+    private final int[] mHead;
+    private final int[] mSize;
+
+    /**
+     * @param maxKey   highest satellite key kept, keys 1 to maxKey are accepted
+     * @param capacity number of recent samples kept per satellite
+     */
+    public SnrHistory(int maxKey, int capacity) {
+        if (maxKey < 1 || capacity < 1) {
+            throw new IllegalArgumentException("maxKey and capacity must be positive");
+        }
+        mMaxKey = maxKey;
+        mCapacity = capacity;
+        mSamples = new float[(maxKey + 1) * capacity];
+        mHead = new int[maxKey + 1];
+        mSize = new int[maxKey + 1];
+    }
+
+    /**
+     * Returns true if samples for this key can be stored.
+     */
+    private boolean accepts(int key) {
+        return key > 0 && key <= mMaxKey;
+    }
+
+    /**
+     * Appends a sample, dropping the oldest one of that satellite if its window is full. Samples
+     * for keys outside 1 to maxKey are ignored.
+     */
+    public void add(int key, float snr) {
+        if (!accepts(key)) {
+            return;
+        }
+        int head = mHead[key];
+        mSamples[key * mCapacity + head] = snr;
+        mHead[key] = head + 1 == mCapacity ? 0 : head + 1;
+        if (mSize[key] < mCapacity) {
+            mSize[key]++;
+        }
+    }
+
+    /**
+     * Number of samples currently held for this satellite.
+     */
+    public int size(int key) {
+        return accepts(key) ? mSize[key] : 0;
+    }
+
+    /**
+     * Returns the sample at {@code index}, where 0 is the oldest sample still held.
+     */
+    public float get(int key, int index) {
+        int size = size(key);
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+        int slot = mHead[key] - size + index;
+        if (slot < 0) {
+            slot += mCapacity;
+        }
+        return mSamples[key * mCapacity + slot];
+    }
+}
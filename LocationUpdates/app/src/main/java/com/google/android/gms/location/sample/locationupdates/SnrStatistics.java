@@ -0,0 +1,81 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+/**
+ * Running SNR statistics.
+ *
+ * Keeps mean and variance of a stream of SNR samples up to date with Welford's method, so each
+ * sample costs O(1) and nothing is stored or parsed back. Standard deviation and coefficient of
+ * variation are derived on demand from the running sums.
+ */
+public class SnrStatistics {
+
+    private int mCount = 0;
+    private double mMean = 0;
+    private double mM2 = 0;
+    private float mMin = Float.MAX_VALUE;
+    private float mMax = -Float.MAX_VALUE;
+
+    /**
+     * Forgets every sample seen so far.
+     */
+    public void reset() {
+        mCount = 0;
+        mMean = 0;
+        mM2 = 0;
+        mMin = Float.MAX_VALUE;
+        mMax = -Float.MAX_VALUE;
+    }
+
+    /**
+     * Adds one sample and updates the running mean and sum of squared differences.
+     */
+    public void add(float sample) {
+        mCount++;
+        double delta = sample - mMean;
+        mMean += delta / mCount;
+        mM2 += delta * (sample - mMean);
+        if (sample < mMin) {
+            mMin = sample;
+        }
+        if (sample > mMax) {
+            mMax = sample;
+        }
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    public double getMean() {
+        return mMean;
+    }
+
+    public float getMin() {
+        return mCount == 0 ? 0 : mMin;
+    }
+
+    public float getMax() {
+        return mCount == 0 ? 0 : mMax;
+    }
+
+    /**
+     * Population variance, matching the sum of squared differences divided by the sample count.
+     */
+    public double getVariance() {
+        return mCount == 0 ? 0 : mM2 / mCount;
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * Standard deviation as a percentage of the mean, or 0 if the mean is 0.
+     */
+    public double getCoefficientOfVariation() {
+        if (mMean == 0) {
+            return 0;
+        }
+        return getStandardDeviation() / mMean * 100;
+    }
+}
@@ -0,0 +1,383 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+/**
+ * Multi-feature spoof score.
+ *
+ * A simulator drives every channel at once, so its SNR is flat across the sky and unrelated to
+ * elevation, while real signals get stronger towards the zenith. Receivers apply a different gain
+ * to every constellation, so the sky features are computed per {@link Constellation}, and a
+ * simulator that only fakes GPS L1 also leaves the real GLONASS, Galileo, BeiDou and QZSS signals
+ * with their natural spread and level next to it. Each fix is scored from 0 (genuine) to 1
+ * (spoofed) on these features:
+ * <ul>
+ * <li>the correlation between SNR and elevation, and the SNR spread, of the constellation that
+ * looks the most simulated,</li>
+ * <li>how much flatter and stronger GPS is than the other constellations,</li>
+ * <li>how steady the SNR of each satellite stayed over its recent {@link SnrHistory} samples, as
+ * real signals fade and recover with multipath and motion while simulated ones hardly move,</li>
+ * <li>the trend of the location accuracy over the last few locations passed to
+ * {@link #addAccuracy(long, float)}; only a worsening accuracy counts.</li>
+ * </ul>
+ * SBAS satellites are geostationary and ignored. All buffers are preallocated primitive arrays,
+ * one block per constellation, so scoring allocates nothing.
+ */
+public class SpoofFeatureScorer {
+
+    /** Correlation of SNR and elevation at or above which a sky counts as fully genuine. */
+    static final float GENUINE_CORRELATION = 0.5f;
+
+    /** SNR standard deviations, in dB-Hz, of a genuine and of a simulated sky. */
+    static final float GENUINE_SPREAD = 5f;
+    static final float FLAT_SPREAD = 1.5f;
+
+    /**
+     * Lead of the mean GPS SNR over the other constellations, in dB-Hz, that is still normal and
+     * that counts as fully suspicious.
+     */
+    static final float GENUINE_SNR_LEAD = 3f;
+    static final float SPOOFED_SNR_LEAD = 8f;
+
+    /**
+     * Ratio of the GPS SNR spread to that of the other constellations on a genuine sky and on one
+     * where only GPS is simulated.
+     */
+    static final float GENUINE_SPREAD_RATIO = 0.8f;
+    static final float FLAT_SPREAD_RATIO = 0.3f;
+
+    /**
+     * Mean standard deviation of the SNR of a satellite over its recent samples, in dB-Hz, of a
+     * genuine and of a simulated sky.
+     */
+    static final float GENUINE_JITTER = 1f;
+    static final float STEADY_JITTER = 0.25f;
+
+    /** Most recent and fewest samples of a satellite that go into its SNR jitter. */
+    static final int JITTER_WINDOW = 30;
+    static final int MIN_JITTER_SAMPLES = 10;
+
+    /** Accuracy loss, in m/s, that counts as fully suspicious. */
+    static final float SUSPICIOUS_ACCURACY_SLOPE = 2f;
+
+    /** Fewest satellites of a constellation, or of the others together, that are scored. */
+    static final int MIN_SATELLITES = 3;
+
+    private static final float WEIGHT_CORRELATION = 0.45f;
+    private static final float WEIGHT_SPREAD = 0.35f;
+    private static final float WEIGHT_CONTRAST = 0.35f;
+    private static final float WEIGHT_JITTER = 0.25f;
+    private static final float WEIGHT_ACCURACY = 0.2f;
+
+    private static final int ACCURACY_WINDOW = 10;
+
+    private final int mMaxSatellites;
+    private final float[] mSnr;
+    private final float[] mElevation;
+    private final int[] mCount = new int[Constellation.COUNT];
+
+    private final float[] mMean = new float[Constellation.COUNT];
+    private final float[] mCorrelation = new float[Constellation.COUNT];
+    private final float[] mSpread = new float[Constellation.COUNT];
+    private final float[] mSkyScore = new float[Constellation.COUNT];
+    private final float[] mSkyWeight = new float[Constellation.COUNT];
+    private int mWorstConstellation = Constellation.UNKNOWN;
+    private float mContrast;
+    private float mJitter;
+
+    private final long[] mAccuracyTimes = new long[ACCURACY_WINDOW];
+    private final float[] mAccuracies = new float[ACCURACY_WINDOW];
+    private int mAccuracyHead = 0;
+    private int mAccuracyFill = 0;
+    private float mAccuracySlope = Float.NaN;
+
+    /**
+     * @param maxSatellites most satellites scored per constellation and fix
+     */
+    public SpoofFeatureScorer(int maxSatellites) {
+        mMaxSatellites = maxSatellites;
+        mSnr = new float[Constellation.COUNT * maxSatellites];
+        mElevation = new float[Constellation.COUNT * maxSatellites];
+    }
+
+    /**
+     * Scores one fix. Features that cannot be computed, e.g. with fewer than three satellites or
+     * fewer than three locations, are left out and the remaining weights are rescaled.
+     *
+     * @param history SNR history that already holds the samples of this fix
+     * @return spoof score between 0 and 1
+     */
+    public float score(SatelliteSnapshot snapshot, SnrHistory history) {
+        for (int c = 0; c < Constellation.COUNT; c++) {
+            mCount[c] = 0;
+        }
+        for (int i = 0; i < snapshot.getCount(); i++) {
+            int c = snapshot.getConstellation(i);
+            if (c == Constellation.UNKNOWN || c == Constellation.SBAS
+                    || mCount[c] == mMaxSatellites) {
+                continue;
+            }
+            int slot = c * mMaxSatellites + mCount[c]++;
+            mSnr[slot] = snapshot.getSnr(i);
+            mElevation[slot] = snapshot.getElevation(i);
+        }
+
+        mWorstConstellation = Constellation.UNKNOWN;
+        for (int c = 0; c < Constellation.COUNT; c++) {
+            scoreSky(c);
+            if (mSkyWeight[c] > 0 && (mWorstConstellation == Constellation.UNKNOWN
+                    || mSkyScore[c] > mSkyScore[mWorstConstellation])) {
+                mWorstConstellation = c;
+            }
+        }
+
+        float score = 0;
+        float weight = 0;
+        if (mWorstConstellation != Constellation.UNKNOWN) {
+            score += mSkyScore[mWorstConstellation] * mSkyWeight[mWorstConstellation];
+            weight += mSkyWeight[mWorstConstellation];
+        }
+        mContrast = scoreContrast();
+        if (!Float.isNaN(mContrast)) {
+            score += WEIGHT_CONTRAST * mContrast;
+            weight += WEIGHT_CONTRAST;
+        }
+        mJitter = computeJitter(snapshot, history);
+        if (!Float.isNaN(mJitter)) {
+            score += WEIGHT_JITTER
+                    * clamp((GENUINE_JITTER - mJitter) / (GENUINE_JITTER - STEADY_JITTER));
+            weight += WEIGHT_JITTER;
+        }
+        if (!Float.isNaN(mAccuracySlope)) {
+            score += WEIGHT_ACCURACY * clamp(mAccuracySlope / SUSPICIOUS_ACCURACY_SLOPE);
+            weight += WEIGHT_ACCURACY;
+        }
+        return weight == 0 ? 0 : score / weight;
+    }
+
+    /**
+     * Pearson correlation of SNR and elevation of one constellation in the last scored fix, or
+     * NaN.
+     */
+    public float getCorrelation(int constellation) {
+        return mCorrelation[constellation];
+    }
+
+    /**
+     * Standard deviation of SNR of one constellation in the last scored fix, in dB-Hz, or NaN.
+     */
+    public float getSpread(int constellation) {
+        return mSpread[constellation];
+    }
+
+    /**
+     * Mean SNR of one constellation in the last scored fix, in dB-Hz, or NaN.
+     */
+    public float getMean(int constellation) {
+        return mMean[constellation];
+    }
+
+    /**
+     * Score between 0 and 1 of the correlation and spread of one constellation in the last scored
+     * fix, or NaN if it had too few satellites.
+     */
+    public float getSkyScore(int constellation) {
+        return mSkyWeight[constellation] > 0 ? mSkyScore[constellation] : Float.NaN;
+    }
+
+    /**
+     * Constellation whose sky score went into the last score, or {@link Constellation#UNKNOWN}.
+     */
+    public int getWorstConstellation() {
+        return mWorstConstellation;
+    }
+
+    /**
+     * Score between 0 and 1 of how much GPS stood out from the other constellations in the last
+     * scored fix, or NaN if there were too few satellites to compare.
+     */
+    public float getContrast() {
+        return mContrast;
+    }
+
+    /**
+     * Mean standard deviation of the SNR of the satellites of the last scored fix over their
+     * recent samples, in dB-Hz, or NaN if too few had enough samples.
+     */
+    public float getJitter() {
+        return mJitter;
+    }
+
+    /**
+     * Least-squares slope of the accuracy over the recent locations, in m/s, or NaN. Positive
+     * when the accuracy gets worse.
+     */
+    public float getAccuracySlope() {
+        return mAccuracySlope;
+    }
+
+    public void reset() {
+        mAccuracyHead = 0;
+        mAccuracyFill = 0;
+        mAccuracySlope = Float.NaN;
+    }
+
+    /**
+     * Adds the accuracy, in m, of a new location to the trend. Call once per location rather than
+     * per fix, so that a location is not counted again by every fix until the next one.
+     *
+     * @param timestamp time of the location, in ms since the epoch like the fix timestamps
+     */
+    public void addAccuracy(long timestamp, float accuracy) {
+        if (!Float.isNaN(accuracy)) {
+            mAccuracySlope = updateAccuracyTrend(timestamp, accuracy);
+        }
+    }
+
+    private float updateAccuracyTrend(long timestamp, float accuracy) {
+        mAccuracyTimes[mAccuracyHead] = timestamp;
+        mAccuracies[mAccuracyHead] = accuracy;
+        mAccuracyHead = (mAccuracyHead + 1) % ACCURACY_WINDOW;
+        if (mAccuracyFill < ACCURACY_WINDOW) {
+            mAccuracyFill++;
+        }
+        if (mAccuracyFill < 3) {
+            return Float.NaN;
+        }
+
+        // Times relative to the newest sample keep the sums small.
+        double meanTime = 0;
+        double meanAccuracy = 0;
+        for (int i = 0; i < mAccuracyFill; i++) {
+            meanTime += (mAccuracyTimes[i] - timestamp) / 1000.0;
+            meanAccuracy += mAccuracies[i];
+        }
+        meanTime /= mAccuracyFill;
+        meanAccuracy /= mAccuracyFill;
+        double covariance = 0;
+        double timeSquares = 0;
+        for (int i = 0; i < mAccuracyFill; i++) {
+            double t = (mAccuracyTimes[i] - timestamp) / 1000.0 - meanTime;
+            covariance += t * (mAccuracies[i] - meanAccuracy);
+            timeSquares += t * t;
+        }
+        return timeSquares == 0 ? Float.NaN : (float) (covariance / timeSquares);
+    }
+
+    /**
+     * Averages the SNR standard deviation over the last {@link #JITTER_WINDOW} samples of every
+     * scored satellite of {@code snapshot} with at least {@link #MIN_JITTER_SAMPLES} of them.
+     */
+    private static float computeJitter(SatelliteSnapshot snapshot, SnrHistory history) {
+        double sum = 0;
+        int satellites = 0;
+        for (int i = 0; i < snapshot.getCount(); i++) {
+            int c = snapshot.getConstellation(i);
+            if (c == Constellation.UNKNOWN || c == Constellation.SBAS) {
+                continue;
+            }
+            int key = snapshot.getKey(i);
+            int size = history.size(key);
+            if (size < MIN_JITTER_SAMPLES) {
+                continue;
+            }
+            int from = Math.max(0, size - JITTER_WINDOW);
+            double mean = 0;
+            for (int k = from; k < size; k++) {
+                mean += history.get(key, k);
+            }
+            mean /= size - from;
+            double squares = 0;
+            for (int k = from; k < size; k++) {
+                double d = history.get(key, k) - mean;
+                squares += d * d;
+            }
+            sum += Math.sqrt(squares / (size - from));
+            satellites++;
+        }
+        return satellites < MIN_SATELLITES ? Float.NaN : (float) (sum / satellites);
+    }
+
+    private void scoreSky(int c) {
+        int n = mCount[c];
+        int base = c * mMaxSatellites;
+        mMean[c] = Float.NaN;
+        mCorrelation[c] = Float.NaN;
+        mSpread[c] = Float.NaN;
+        mSkyScore[c] = 0;
+        mSkyWeight[c] = 0;
+        if (n < MIN_SATELLITES) {
+            return;
+        }
+        double meanSnr = 0;
+        double meanElevation = 0;
+        for (int i = base; i < base + n; i++) {
+            meanSnr += mSnr[i];
+            meanElevation += mElevation[i];
+        }
+        meanSnr /= n;
+        meanElevation /= n;
+        double covariance = 0;
+        double snrSquares = 0;
+        double elevationSquares = 0;
+        for (int i = base; i < base + n; i++) {
+            double snr = mSnr[i] - meanSnr;
+            double elevation = mElevation[i] - meanElevation;
+            covariance += snr * elevation;
+            snrSquares += snr * snr;
+            elevationSquares += elevation * elevation;
+        }
+        mMean[c] = (float) meanSnr;
+        mSpread[c] = (float) Math.sqrt(snrSquares / n);
+        float score = WEIGHT_SPREAD
+                * clamp((GENUINE_SPREAD - mSpread[c]) / (GENUINE_SPREAD - FLAT_SPREAD));
+        float weight = WEIGHT_SPREAD;
+        if (snrSquares > 0 && elevationSquares > 0) {
+            mCorrelation[c] = (float) (covariance / Math.sqrt(snrSquares * elevationSquares));
+            score += WEIGHT_CORRELATION
+                    * clamp((GENUINE_CORRELATION - mCorrelation[c]) / GENUINE_CORRELATION);
+            weight += WEIGHT_CORRELATION;
+        }
+        mSkyScore[c] = score / weight;
+        mSkyWeight[c] = weight;
+    }
+
+    /**
+     * Compares GPS with the other constellations pooled: a lead in mean SNR and a narrower spread
+     * both point to simulated GPS signals.
+     */
+    private float scoreContrast() {
+        if (mCount[Constellation.GPS] < MIN_SATELLITES) {
+            return Float.NaN;
+        }
+        double sum = 0;
+        double squares = 0;
+        int n = 0;
+        for (int c = 0; c < Constellation.COUNT; c++) {
+            if (c == Constellation.GPS) {
+                continue;
+            }
+            int base = c * mMaxSatellites;
+            for (int i = base; i < base + mCount[c]; i++) {
+                sum += mSnr[i];
+                squares += mSnr[i] * mSnr[i];
+            }
+            n += mCount[c];
+        }
+        if (n < MIN_SATELLITES) {
+            return Float.NaN;
+        }
+        double mean = sum / n;
+        double spread = Math.sqrt(Math.max(0, squares / n - mean * mean));
+        float lead = (float) (mMean[Constellation.GPS] - mean);
+        float contrast = clamp((lead - GENUINE_SNR_LEAD) / (SPOOFED_SNR_LEAD - GENUINE_SNR_LEAD));
+        if (spread == 0) {
+            return contrast;
+        }
+        float ratio = (float) (mSpread[Constellation.GPS] / spread);
+        return (contrast + clamp((GENUINE_SPREAD_RATIO - ratio)
+                / (GENUINE_SPREAD_RATIO - FLAT_SPREAD_RATIO))) / 2;
+    }
+
+    private static float clamp(float value) {
+        return value < 0 ? 0 : value > 1 ? 1 : value;
+    }
+}
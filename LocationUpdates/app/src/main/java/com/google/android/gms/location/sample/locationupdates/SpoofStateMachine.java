@@ -0,0 +1,189 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+/**
+ * Spoof detector state machine.
+ *
+ * Every fix is classified as suspicious or not (by default, a coefficient of variation of SNR in
+ * the 5% to 10% band) and pushed into a fixed-size sliding window that keeps a running count of
+ * suspicious fixes. The state moves through
+ *
+ * <pre>
+ * WARMUP -&gt; NORMAL -&gt; SUSPECT -&gt; SPOOFED -&gt; RECOVERING -&gt; NORMAL
+ * </pre>
+ *
+ * when that count crosses the configured thresholds. Entering a state needs more suspicious fixes
+ * than leaving it, and recovering needs a run of clean windows, so the verdict does not flap. An
+ * update is O(1) and nothing grows with the length of the session.
+ */
+public class SpoofStateMachine {
+
+    public static final int STATE_WARMUP = 0;
+    public static final int STATE_NORMAL = 1;
+    public static final int STATE_SUSPECT = 2;
+    public static final int STATE_SPOOFED = 3;
+    public static final int STATE_RECOVERING = 4;
+
+    /**
+     * Number of states, for arrays indexed by state.
+     */
+    public static final int STATE_COUNT = 5;
+
+    private static final String[] STATE_NAMES = {
+            "warmup", "normal", "suspect", "spoofed", "recovering"
+    };
+
+    public static final int DEFAULT_WINDOW_SIZE = 20;
+
+    private final boolean[] mWindow;
+    private int mHead = 0;
+    private int mFill = 0;
+    private int mSuspicious = 0;
+
+    private float mBandLow = 5;
+    private float mBandHigh = 10;
+    private int mSuspectThreshold;
+    private int mSpoofedThreshold;
+    private int mClearThreshold;
+    private final int mRecoveryFixes;
+
+    private int mState = STATE_WARMUP;
+    private int mCleanFixes = 0;
+
+    /**
+     * Creates a detector with a window of {@code windowSize} fixes. By default a quarter of the
+     * window must be suspicious to become SUSPECT, half of it to become SPOOFED, and the count must
+     * fall to a tenth of it, for a whole window when recovering, to clear.
+     */
+    public SpoofStateMachine(int windowSize) {
+        if (windowSize < 4) {
+            throw new IllegalArgumentException("windowSize must be at least 4");
+        }
+        mWindow = new boolean[windowSize];
+        setThresholds(windowSize / 4, windowSize / 2, windowSize / 10);
+        mRecoveryFixes = windowSize;
+    }
+
+    /**
+     * Sets the coefficient of variation band, in percent, that makes a fix suspicious. The band
+     * includes {@code low} and excludes {@code high}.
+     */
+    public void setSuspiciousBand(float low, float high) {
+        if (!(low < high)) {
+            throw new IllegalArgumentException("low must be below high");
+        }
+        mBandLow = low;
+        mBandHigh = high;
+    }
+
+    /**
+     * Sets the number of suspicious fixes in the window needed to become SUSPECT and SPOOFED, and
+     * the number at or below which SUSPECT and SPOOFED are left again. The gap between
+     * {@code clear} and {@code suspect} is the hysteresis.
+     */
+    public void setThresholds(int suspect, int spoofed, int clear) {
+        if (clear < 0 || clear >= suspect || suspect > spoofed || spoofed > mWindow.length) {
+            throw new IllegalArgumentException("Need 0 <= clear < suspect <= spoofed <= window");
+        }
+        mSuspectThreshold = suspect;
+        mSpoofedThreshold = spoofed;
+        mClearThreshold = clear;
+    }
+
+    public int getWindowSize() {
+        return mWindow.length;
+    }
+
+    public int getState() {
+        return mState;
+    }
+
+    /**
+     * Number of suspicious fixes currently in the window.
+     */
+    public int getSuspiciousCount() {
+        return mSuspicious;
+    }
+
+    /**
+     * Returns true if a fix with this coefficient of variation counts as suspicious.
+     */
+    public boolean isSuspicious(double coefficientOfVariation) {
+        return coefficientOfVariation >= mBandLow && coefficientOfVariation < mBandHigh;
+    }
+
+    /**
+     * Classifies one fix by its coefficient of variation and returns the new state.
+     */
+    public int update(double coefficientOfVariation) {
+        return update(isSuspicious(coefficientOfVariation));
+    }
+
+    /**
+     * Pushes one already classified fix into the window and returns the new state.
+     */
+    public int update(boolean suspicious) {
+        if (mFill == mWindow.length) {
+            if (mWindow[mHead]) {
+                mSuspicious--;
+            }
+        } else {
+            mFill++;
+        }
+        mWindow[mHead] = suspicious;
+        if (suspicious) {
+            mSuspicious++;
+        }
+        mHead = mHead + 1 == mWindow.length ? 0 : mHead + 1;
+
+        switch (mState) {
+            case STATE_WARMUP:
+                if (mFill == mWindow.length) {
+                    mState = mSuspicious >= mSuspectThreshold ? STATE_SUSPECT : STATE_NORMAL;
+                }
+                break;
+            case STATE_NORMAL:
+                if (mSuspicious >= mSuspectThreshold) {
+                    mState = STATE_SUSPECT;
+                }
+                break;
+            case STATE_SUSPECT:
+                if (mSuspicious >= mSpoofedThreshold) {
+                    mState = STATE_SPOOFED;
+                } else if (mSuspicious <= mClearThreshold) {
+                    mState = STATE_NORMAL;
+                }
+                break;
+            case STATE_SPOOFED:
+                if (mSuspicious <= mClearThreshold) {
+                    mState = STATE_RECOVERING;
+                    mCleanFixes = 1;
+                }
+                break;
+            case STATE_RECOVERING:
+                if (mSuspicious >= mSuspectThreshold) {
+                    mState = STATE_SPOOFED;
+                } else if (mSuspicious > mClearThreshold) {
+                    mCleanFixes = 0;
+                } else if (++mCleanFixes >= mRecoveryFixes) {
+                    mState = STATE_NORMAL;
+                }
+                break;
+        }
+        return mState;
+    }
+
+    /**
+     * Empties the window and goes back to WARMUP.
+     */
+    public void reset() {
+        mHead = 0;
+        mFill = 0;
+        mSuspicious = 0;
+        mCleanFixes = 0;
+        mState = STATE_WARMUP;
+    }
+
+    public static String getStateName(int state) {
+        return state >= 0 && state < STATE_COUNT ? STATE_NAMES[state] : "unknown";
+    }
+}
@@ -0,0 +1,93 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.PrintWriter;
+
+/**
+ * Startup milestones of the activity, such as time-to-first-frame and time-to-first-fix.
+ *
+ * Each milestone is marked once per activity instance, in ms since {@code onCreate}. Marks are
+ * written to the log, which is kept even when the trace level is off, and recorded in the
+ * {@link DiagnosticsTrace}. Must only be used from the main thread.
+ */
+public class StartupTrace {
+
+    private static final String TAG = "StartupTrace";
+
+    /** The first frame was drawn. */
+    public static final int MARK_FIRST_FRAME = 0;
+    /** The work deferred until after the first frame is done. */
+    public static final int MARK_DEFERRED_INIT = 1;
+    /** The analyzer was built on the processing thread. */
+    public static final int MARK_DETECTOR_READY = 2;
+    /** The first satellite fix was processed and shown. */
+    public static final int MARK_FIRST_FIX = 3;
+    /** The first location was shown. */
+    public static final int MARK_FIRST_LOCATION = 4;
+
+    private static final String[] MARK_NAMES = {
+            "first-frame", "deferred-init", "detector-ready", "first-fix", "first-location"
+    };
+
+    private static boolean sCreatedBefore = false;
+
+    private final long mOrigin;
+    private final boolean mColdStart;
+    private final long[] mTimes = new long[MARK_NAMES.length];
+
+    /**
+     * Starts the clock. Call first thing in {@code onCreate}.
+     */
+    public StartupTrace() {
+        mColdStart = !sCreatedBefore;
+        sCreatedBefore = true;
+        mOrigin = SystemClock.elapsedRealtime();
+        for (int i = 0; i < mTimes.length; i++) {
+            mTimes[i] = -1;
+        }
+    }
+
+    /**
+     * Whether this is the first activity of its process.
+     */
+    public boolean isColdStart() {
+        return mColdStart;
+    }
+
+    /**
+     * Records {@code mark} unless it was recorded before.
+     */
+    public void mark(int mark) {
+        if (mTimes[mark] >= 0) {
+            return;
+        }
+        long elapsed = SystemClock.elapsedRealtime() - mOrigin;
+        mTimes[mark] = elapsed;
+        Log.i(TAG, MARK_NAMES[mark] + " " + elapsed + " ms" + (mColdStart ? " (cold)" : ""));
+        DiagnosticsTrace.record(DiagnosticsTrace.LEVEL_INFO, DiagnosticsTrace.EVENT_STARTUP,
+                mark, elapsed, 0);
+    }
+
+    /**
+     * Time of {@code mark} in ms since {@code onCreate}, or -1 if it was not reached yet.
+     */
+    public long getTime(int mark) {
+        return mTimes[mark];
+    }
+
+    /**
+     * Writes the marks reached so far on one line.
+     */
+    public void dump(String prefix, PrintWriter writer) {
+        writer.print(prefix);
+        writer.print(mColdStart ? "cold start" : "warm start");
+        for (int i = 0; i < mTimes.length; i++) {
+            if (mTimes[i] >= 0) {
+                writer.print(" " + MARK_NAMES[i] + " " + mTimes[i] + " ms");
+            }
+        }
+        writer.println();
+    }
+}
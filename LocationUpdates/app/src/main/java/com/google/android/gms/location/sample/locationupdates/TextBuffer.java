@@ -0,0 +1,169 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+/**
+ * Double-buffered text of one widget.
+ *
+ * The next text is formatted into a scratch char array with the {@code append} methods, then
+ * {@link #commit()} compares it with the text committed last. Only if it differs are the arrays
+ * swapped, so the caller touches the widget only on a real change. The committed array is never
+ * written to until the following commit swaps it out, so it can be handed to
+ * {@code TextView.setText(char[], int, int)}, which keeps a reference to it instead of copying.
+ * Formatting allocates nothing once the arrays are large enough.
+ */
+public class TextBuffer {
+
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L
+    };
+
+    private char[] mText;
+    private int mTextLength = -1;
+    private char[] mScratch;
+    private int mScratchLength = 0;
+
+    /**
+     * @param capacity initial size of both arrays, they grow if a text does not fit
+     */
+    public TextBuffer(int capacity) {
+        mText = new char[capacity];
+        mScratch = new char[capacity];
+    }
+
+    /**
+     * Starts formatting the next text.
+     */
+    public TextBuffer begin() {
+        mScratchLength = 0;
+        return this;
+    }
+
+    public TextBuffer append(char c) {
+        ensureCapacity(1);
+        mScratch[mScratchLength++] = c;
+        return this;
+    }
+
+    /**
+     * Appends {@code text}, or "null" like {@link StringBuilder} does.
+     */
+    public TextBuffer append(String text) {
+        if (text == null) {
+            text = "null";
+        }
+        int length = text.length();
+        ensureCapacity(length);
+        text.getChars(0, length, mScratch, mScratchLength);
+        mScratchLength += length;
+        return this;
+    }
+
+    public TextBuffer append(long value) {
+        if (value == Long.MIN_VALUE) {
+            return append(Long.toString(value));
+        }
+        if (value < 0) {
+            append('-');
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        ensureCapacity(digits);
+        for (int i = mScratchLength + digits - 1; i >= mScratchLength; i--) {
+            mScratch[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        mScratchLength += digits;
+        return this;
+    }
+
+    /**
+     * Appends {@code value} rounded half up to {@code decimals} fraction digits, at most 8, with
+     * a '.' separator. NaN and values beyond the range of a long fall back to
+     * {@link Double#toString(double)}.
+     */
+    public TextBuffer append(double value, int decimals) {
+        if (decimals < 0 || decimals >= POWERS_OF_TEN.length) {
+            throw new IllegalArgumentException("decimals must be between 0 and "
+                    + (POWERS_OF_TEN.length - 1));
+        }
+        long scale = POWERS_OF_TEN[decimals];
+        double scaled = Math.abs(value) * scale + 0.5;
+        if (Double.isNaN(value) || scaled >= Long.MAX_VALUE) {
+            return append(Double.toString(value));
+        }
+        long units = (long) scaled;
+        if (value < 0 && units != 0) {
+            append('-');
+        }
+        append(units / scale);
+        if (decimals > 0) {
+            append('.');
+            long fraction = units % scale;
+            ensureCapacity(decimals);
+            for (int i = mScratchLength + decimals - 1; i >= mScratchLength; i--) {
+                mScratch[i] = (char) ('0' + fraction % 10);
+                fraction /= 10;
+            }
+            mScratchLength += decimals;
+        }
+        return this;
+    }
+
+    /**
+     * Ends formatting. Returns true, making the new text current, if it differs from the text
+     * committed last; returns false and keeps the current text otherwise.
+     */
+    public boolean commit() {
+        if (mScratchLength == mTextLength) {
+            boolean same = true;
+            for (int i = 0; i < mScratchLength; i++) {
+                if (mScratch[i] != mText[i]) {
+                    same = false;
+                    break;
+                }
+            }
+            if (same) {
+                return false;
+            }
+        }
+        char[] text = mText;
+        mText = mScratch;
+        mTextLength = mScratchLength;
+        mScratch = text;
+        return true;
+    }
+
+    /**
+     * Forgets the committed text, so the next commit reports a change whatever it holds.
+     */
+    public void invalidate() {
+        mTextLength = -1;
+    }
+
+    /**
+     * The committed text, valid up to {@link #length()} until the next successful commit.
+     */
+    public char[] getChars() {
+        return mText;
+    }
+
+    public int length() {
+        return Math.max(mTextLength, 0);
+    }
+
+    @Override
+    public String toString() {
+        return new String(mText, 0, length());
+    }
+
+    private void ensureCapacity(int extra) {
+        int needed = mScratchLength + extra;
+        if (needed > mScratch.length) {
+            char[] scratch = new char[Math.max(needed, mScratch.length * 2)];
+            System.arraycopy(mScratch, 0, scratch, 0, mScratchLength);
+            mScratch = scratch;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Maps GpsStatus PRNs to constellations and compact keys.
+ */
+public class ConstellationTest {
+
+    @Test
+    public void keysArePackedPerConstellation() {
+        assertEquals(Constellation.GPS, Constellation.of(32));
+        assertEquals(Constellation.SBAS, Constellation.of(40));
+        assertEquals(Constellation.GLONASS, Constellation.of(65));
+        assertEquals(Constellation.QZSS, Constellation.of(193));
+        assertEquals(Constellation.BEIDOU, Constellation.of(263));
+        assertEquals(Constellation.GALILEO, Constellation.of(301));
+        assertEquals(Constellation.UNKNOWN, Constellation.of(150));
+
+        assertEquals(12, Constellation.key(12));
+        assertEquals(0, Constellation.key(0));
+        assertEquals(0, Constellation.key(400));
+        int last = 0;
+        for (int prn = 1; prn <= 336; prn++) {
+            int key = Constellation.key(prn);
+            if (key != 0) {
+                assertEquals(last + 1, key);
+                assertEquals(prn, Constellation.prnOfKey(key));
+                assertEquals(Constellation.of(prn), Constellation.ofKey(key));
+                last = key;
+            }
+        }
+        assertEquals(Constellation.MAX_KEY, last);
+    }
+
+    @Test
+    public void convertsSatelliteIds() {
+        assertEquals(40, Constellation.prn(Constellation.SBAS, 127));
+        assertEquals(69, Constellation.prn(Constellation.GLONASS, 5));
+        assertEquals(69, Constellation.prn(Constellation.GLONASS, 69));
+        assertEquals(223, Constellation.prn(Constellation.BEIDOU, 23));
+        assertEquals(311, Constellation.prn(Constellation.GALILEO, 11));
+        assertEquals(0, Constellation.prn(Constellation.GALILEO, 37));
+
+        assertEquals(127, Constellation.svidOfKey(Constellation.key(40)));
+        assertEquals(5, Constellation.svidOfKey(Constellation.key(69)));
+        assertEquals(11, Constellation.svidOfKey(Constellation.key(311)));
+    }
+}
@@ -0,0 +1,141 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Flushing, rotation and failure handling of the background CSV log writer.
+ */
+public class CsvLogWriterTest {
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    private static final long HOUR = 60L * 60 * 1000;
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    @Rule
+    public final TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void flushesOnceTheIntervalHasPassed() throws Exception {
+        SegmentedLog log = newLog(1 << 20);
+        CsvLogWriter writer = new CsvLogWriter(log, 1 << 20, 50);
+        writer.start();
+        assertTrue(writer.write("a\n"));
+
+        assertTrue(waitForOpenSegmentBytes(log, 2));
+        writer.close();
+        log.close();
+    }
+
+    @Test
+    public void flushesOnceEnoughBytesArePending() throws Exception {
+        SegmentedLog log = newLog(1 << 20);
+        CsvLogWriter writer = new CsvLogWriter(log, 4, HOUR);
+        writer.start();
+        assertTrue(writer.write("abcd\n"));
+
+        assertTrue(waitForOpenSegmentBytes(log, 5));
+        writer.close();
+        log.close();
+    }
+
+    @Test
+    public void rotatesFullSegments() throws Exception {
+        SegmentedLog log = newLog(10);
+        CsvLogWriter writer = new CsvLogWriter(log, 1 << 20, HOUR);
+        writer.start();
+        for (int i = 0; i < 3; i++) {
+            assertTrue(writer.write("line" + i + "\n"));
+        }
+        writer.close();
+        log.close();
+
+        // The second line fills the first segment, so the third starts a new one.
+        List<SegmentedLog.Segment> segments = log.getSegments(0, Long.MAX_VALUE);
+        assertEquals(2, segments.size());
+        assertEquals("[line0, line1]", readLines(segments.get(0).getFile()).toString());
+        assertEquals("[line2]", readLines(segments.get(1).getFile()).toString());
+        assertEquals(0, writer.getDroppedLines());
+    }
+
+    @Test
+    public void keepsWritingAfterAFailure() throws Exception {
+        final File unwritable = mTemporaryFolder.newFolder();
+        final AtomicBoolean fail = new AtomicBoolean(true);
+        final List<String> errors = new ArrayList<String>();
+        SegmentedLog log = new SegmentedLog(mTemporaryFolder.newFolder(), "log", ".csv", 1 << 20,
+                DAY, 1 << 20, new SegmentedLog.ErrorListener() {
+                    @Override
+                    public void onError(String message, IOException cause) {
+                        errors.add(message);
+                    }
+                }) {
+            @Override
+            public synchronized File openSegment(long now) {
+                // A directory cannot be opened for writing.
+                return fail.getAndSet(false) ? unwritable : super.openSegment(now);
+            }
+        };
+        CsvLogWriter writer = new CsvLogWriter(log, 1 << 20, HOUR);
+        writer.start();
+        writer.write("lost\n");
+        writer.write("kept\n");
+        writer.close();
+        log.close();
+
+        assertEquals(1, log.getErrorCount());
+        assertEquals("Could not write CSV log", errors.get(0));
+        List<SegmentedLog.Segment> segments = log.getSegments(0, Long.MAX_VALUE);
+        assertEquals(1, segments.size());
+        assertEquals("[kept]", readLines(segments.get(0).getFile()).toString());
+    }
+
+    private SegmentedLog newLog(long maxSegmentBytes) throws IOException {
+        return new SegmentedLog(mTemporaryFolder.newFolder(), "log", ".csv", maxSegmentBytes, DAY,
+                1 << 20);
+    }
+
+    /**
+     * Waits until the open segment holds {@code bytes} bytes on disk.
+     */
+    private static boolean waitForOpenSegmentBytes(SegmentedLog log, long bytes)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            List<SegmentedLog.Segment> segments = log.getSegments(0, Long.MAX_VALUE);
+            if (!segments.isEmpty() && segments.get(segments.size() - 1).getFile().length()
+                    == bytes) {
+                return true;
+            }
+            Thread.sleep(10);
+        }
+        return false;
+    }
+
+    private static List<String> readLines(File segment) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                SegmentedLog.open(segment), "UTF-8"));
+        try {
+            List<String> lines = new ArrayList<String>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+            return lines;
+        } finally {
+            reader.close();
+        }
+    }
+}
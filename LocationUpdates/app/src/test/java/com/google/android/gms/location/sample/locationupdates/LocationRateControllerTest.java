@@ -0,0 +1,47 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives the location rate controller through motion and verdict changes.
+ */
+public class LocationRateControllerTest {
+
+    @Test
+    public void slowsDownWhenStationaryAndNormal() {
+        LocationRateController controller = new LocationRateController(0);
+        long now = 0;
+        for (; now < LocationRateController.STABLE_PERIOD_MS; now += 10000) {
+            controller.onVerdict(now, SpoofStateMachine.STATE_NORMAL);
+            controller.onLocation(now, 1.3, 103.8, 0.1f);
+            assertEquals(LocationRateController.MODE_NORMAL, controller.getMode());
+        }
+        assertTrue(controller.onVerdict(now, SpoofStateMachine.STATE_NORMAL));
+        assertEquals(LocationRateController.MODE_SLOW, controller.getMode());
+    }
+
+    @Test
+    public void speedsUpWhenSuspiciousButRateLimited() {
+        LocationRateController controller = new LocationRateController(0);
+        assertFalse(controller.onVerdict(1000, SpoofStateMachine.STATE_SUSPECT));
+        assertEquals(LocationRateController.MODE_NORMAL, controller.getMode());
+        assertTrue(controller.onVerdict(LocationRateController.MIN_CHANGE_INTERVAL_MS,
+                SpoofStateMachine.STATE_SUSPECT));
+        assertEquals(LocationRateController.MODE_FAST, controller.getMode());
+    }
+
+    @Test
+    public void estimatesSpeedFromDisplacement() {
+        LocationRateController controller = new LocationRateController(-60000);
+        controller.onVerdict(0, SpoofStateMachine.STATE_NORMAL);
+        controller.onLocation(0, 1.3, 103.8, Float.NaN);
+        // About 22 m in 10 s.
+        assertTrue(controller.onLocation(10000, 1.3002, 103.8, Float.NaN));
+        assertEquals(LocationRateController.MODE_FAST, controller.getMode());
+        assertEquals(22.2, LocationRateController.distance(1.3, 103.8, 1.3002, 103.8), 0.1);
+    }
+}
@@ -0,0 +1,78 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Updates and sorts the rows of the PRN table.
+ */
+public class PrnTableModelTest {
+
+    @Test
+    public void flagsOnlyChangedRows() {
+        PrnTableModel model = new PrnTableModel(32);
+        SatelliteSnapshot snapshot = new SatelliteSnapshot(8);
+        snapshot.clear(0);
+        snapshot.add(12, 30, 40, 0, true);
+        snapshot.add(3, 25, 20, 0, false);
+        snapshot.add(77, 40, 10, 0, false);
+        assertTrue(model.update(snapshot));
+        assertEquals(2, model.getRowCount());
+        assertEquals(3, model.getKeyAt(0));
+        assertEquals(12, model.getKeyAt(1));
+        assertTrue(model.isOrderChanged());
+        model.markApplied();
+
+        snapshot.clear(1000);
+        snapshot.add(12, 30.04f, 40, 0, true);
+        snapshot.add(3, 25, 20, 0, false);
+        assertFalse(model.update(snapshot));
+
+        snapshot.clear(2000);
+        snapshot.add(12, 30, 40, 0, true);
+        snapshot.add(3, 26, 20, 0, true);
+        assertTrue(model.update(snapshot));
+        assertTrue(model.isChanged(3));
+        assertFalse(model.isChanged(12));
+        assertFalse(model.isOrderChanged());
+        assertEquals(26f, model.getSnr(3), 0);
+        assertTrue(model.isUsed(3));
+    }
+
+    @Test
+    public void sortsBySnrAndDropsMissingRows() {
+        PrnTableModel model = new PrnTableModel(32);
+        model.setSortOrder(PrnTableModel.SORT_BY_SNR);
+        SatelliteSnapshot snapshot = new SatelliteSnapshot(8);
+        snapshot.clear(0);
+        snapshot.add(1, 20, 0, 0, false);
+        snapshot.add(2, 45, 0, 0, true);
+        snapshot.add(3, 33, 0, 0, true);
+        snapshot.add(4, 33, 0, 0, true);
+        model.update(snapshot);
+        assertEquals(2, model.getKeyAt(0));
+        assertEquals(3, model.getKeyAt(1));
+        assertEquals(4, model.getKeyAt(2));
+        assertEquals(1, model.getKeyAt(3));
+        model.markApplied();
+
+        snapshot.clear(1000);
+        snapshot.add(1, 50, 0, 0, true);
+        snapshot.add(3, 33, 0, 0, true);
+        snapshot.add(4, 33, 0, 0, true);
+        assertTrue(model.update(snapshot));
+        assertTrue(model.isOrderChanged());
+        assertTrue(model.isChanged(2));
+        assertEquals(3, model.getRowCount());
+        assertEquals(1, model.getKeyAt(0));
+        assertEquals(3, model.getKeyAt(1));
+
+        model.setSortOrder(PrnTableModel.SORT_BY_PRN);
+        assertEquals(1, model.getKeyAt(0));
+        assertEquals(3, model.getKeyAt(1));
+        assertEquals(4, model.getKeyAt(2));
+    }
+}
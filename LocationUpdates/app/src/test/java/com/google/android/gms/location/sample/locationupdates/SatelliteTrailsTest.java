@@ -0,0 +1,74 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Sampling, wrap-around and expiry of the sky plot trails.
+ */
+public class SatelliteTrailsTest {
+
+    private final int[] mKeys = new int[2];
+    private final float[] mX = new float[2];
+    private final float[] mY = new float[2];
+    private final float[] mSnr = new float[2];
+
+    @Test
+    public void keepsOnePositionPerInterval() {
+        SatelliteTrails trails = new SatelliteTrails(Constellation.MAX_KEY);
+        update(trails, 0, 12, 0.1f, 30);
+        update(trails, SatelliteTrails.INTERVAL_MS - 1, 12, 0.2f, 31);
+        assertEquals(1, trails.getCount(12));
+        update(trails, SatelliteTrails.INTERVAL_MS, 12, 0.3f, 32);
+        assertEquals(2, trails.getCount(12));
+        assertEquals(0.1f, trails.getX(trails.getSlot(12, 0)), 0);
+        assertEquals(0.3f, trails.getX(trails.getSlot(12, 1)), 0);
+        assertEquals(32f, trails.getSnr(trails.getSlot(12, 1)), 0);
+    }
+
+    @Test
+    public void keepsTheLatestPositionsOldestFirst() {
+        SatelliteTrails trails = new SatelliteTrails(Constellation.MAX_KEY);
+        int updates = SatelliteTrails.LENGTH + 5;
+        for (int i = 0; i < updates; i++) {
+            update(trails, i * SatelliteTrails.INTERVAL_MS, 40, i, 20);
+        }
+        assertEquals(SatelliteTrails.LENGTH, trails.getCount(40));
+        for (int k = 0; k < SatelliteTrails.LENGTH; k++) {
+            assertEquals(updates - SatelliteTrails.LENGTH + k,
+                    trails.getX(trails.getSlot(40, k)), 0);
+        }
+    }
+
+    @Test
+    public void keepsSatellitesMissingFromSomeUpdates() {
+        SatelliteTrails trails = new SatelliteTrails(Constellation.MAX_KEY);
+        update(trails, 0, 3, 0, 0);
+        update(trails, 1000, 0, 0, 0);
+        update(trails, SatelliteTrails.INTERVAL_MS, 3, 1, 0);
+        assertEquals(2, trails.getCount(3));
+    }
+
+    @Test
+    public void dropsSatellitesOutOfView() {
+        SatelliteTrails trails = new SatelliteTrails(Constellation.MAX_KEY);
+        mKeys[0] = 3;
+        mKeys[1] = 7;
+        trails.update(0, mKeys, mX, mY, mSnr, 2);
+        update(trails, SatelliteTrails.ABSENCE_TIMEOUT_MS, 3, 0, 0);
+        assertEquals(2, trails.getCount(3));
+        assertEquals(1, trails.getCount(7));
+        update(trails, SatelliteTrails.ABSENCE_TIMEOUT_MS + 1, 3, 0, 0);
+        assertEquals(2, trails.getCount(3));
+        assertEquals(0, trails.getCount(7));
+    }
+
+    private void update(SatelliteTrails trails, long now, int key, float x, float snr) {
+        mKeys[0] = key;
+        mX[0] = x;
+        mY[0] = -x;
+        mSnr[0] = snr;
+        trails.update(now, mKeys, mX, mY, mSnr, 1);
+    }
+}
@@ -0,0 +1,179 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Rotation, compression, retention and time lookup of the segmented CSV log.
+ */
+public class SegmentedLogTest {
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    @Rule
+    public final TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void rotatesBySizeAndAge() throws Exception {
+        SegmentedLog log = new SegmentedLog(newDirectory(), "log", ".csv", 100, DAY, 1 << 20);
+        assertFalse(log.isRotationDue(1000, 99, 1000 + DAY - 1));
+        assertTrue(log.isRotationDue(1000, 100, 1000));
+        assertTrue(log.isRotationDue(1000, 0, 1000 + DAY));
+        log.close();
+    }
+
+    @Test
+    public void compressesClosedSegmentsAndFindsThemByTime() throws Exception {
+        File directory = newDirectory();
+        SegmentedLog log = new SegmentedLog(directory, "log", ".csv", 100, DAY, 1 << 20);
+        writeSegment(log, 1000, 1900, "first\n");
+        writeSegment(log, 2000, 2900, "second\n");
+        File open = log.openSegment(3000);
+        write(open, "third\n");
+        log.close();
+
+        List<SegmentedLog.Segment> all = log.getSegments(0, Long.MAX_VALUE);
+        assertEquals(3, all.size());
+        assertTrue(all.get(0).isCompressed());
+        assertTrue(all.get(1).isCompressed());
+        assertFalse(all.get(2).isCompressed());
+        assertEquals(SegmentedLog.OPEN, all.get(2).getEnd());
+        assertEquals("first", readFirstLine(all.get(0).getFile()));
+        assertFalse(new File(directory, "log-1000.csv").exists());
+
+        List<SegmentedLog.Segment> window = log.getSegments(1950, 2500);
+        assertEquals(1, window.size());
+        assertEquals(2000, window.get(0).getStart());
+        assertEquals(2900, window.get(0).getEnd());
+        assertEquals("second", readFirstLine(window.get(0).getFile()));
+        assertEquals(2, log.getSegments(2900, 3001).size());
+        assertEquals(1, log.getSegments(5000, 6000).size());
+    }
+
+    @Test
+    public void deletesOldestSegmentsOverBudget() throws Exception {
+        SegmentedLog log = new SegmentedLog(newDirectory(), "log", ".csv", 1 << 20, DAY, 2500);
+        // Random letters only compress to about 60%, so five segments never fit.
+        Random random = new Random(42);
+        for (int i = 0; i < 5; i++) {
+            writeSegment(log, i * 1000, i * 1000 + 999, randomLetters(random, 1000));
+        }
+        log.close();
+
+        List<SegmentedLog.Segment> segments = log.getSegments(0, Long.MAX_VALUE);
+        assertTrue(log.getTotalBytes() <= 2500);
+        assertTrue(segments.size() < 5);
+        assertEquals(4000, segments.get(segments.size() - 1).getStart());
+        for (int i = 0; i < segments.size(); i++) {
+            assertTrue(segments.get(i).getFile().exists());
+        }
+    }
+
+    @Test
+    public void recoversSegmentLeftOpenFromManifest() throws Exception {
+        File directory = newDirectory();
+        SegmentedLog log = new SegmentedLog(directory, "log", ".csv", 100, DAY, 1 << 20);
+        writeSegment(log, 1000, 1900, "first\n");
+        write(log.openSegment(2000), "crashed\n");
+        log.openSegment(3000);
+        log.close();
+
+        SegmentedLog reopened = new SegmentedLog(directory, "log", ".csv", 100, DAY, 1 << 20);
+        reopened.close();
+        List<SegmentedLog.Segment> segments = reopened.getSegments(0, Long.MAX_VALUE);
+        // The empty segment is dropped, the one with lines is closed and compressed.
+        assertEquals(2, segments.size());
+        assertEquals(1900, segments.get(0).getEnd());
+        assertTrue(segments.get(1).getEnd() >= 2000);
+        assertTrue(segments.get(1).isCompressed());
+        assertEquals("crashed", readFirstLine(segments.get(1).getFile()));
+    }
+
+    @Test
+    public void adoptsUnsegmentedLog() throws Exception {
+        File directory = newDirectory();
+        File legacy = mTemporaryFolder.newFile("legacy.csv");
+        write(legacy, "legacy\n");
+        SegmentedLog log = new SegmentedLog(directory, "log", ".csv", 100, DAY, 1 << 20);
+        writeSegment(log, 5000, 5900, "new\n");
+        log.adopt(legacy, 0, 4000);
+        log.close();
+
+        assertFalse(legacy.exists());
+        List<SegmentedLog.Segment> segments = log.getSegments(0, 4500);
+        assertEquals(1, segments.size());
+        assertEquals("legacy", readFirstLine(segments.get(0).getFile()));
+    }
+
+    @Test
+    public void reportsFailuresToTheListener() throws Exception {
+        final List<String> errors = new ArrayList<String>();
+        File directory = newDirectory();
+        SegmentedLog log = new SegmentedLog(directory, "log", ".csv", 100, DAY, 1 << 20,
+                new SegmentedLog.ErrorListener() {
+                    @Override
+                    public void onError(String message, IOException cause) {
+                        errors.add(message);
+                    }
+                });
+        log.adopt(new File(directory, "missing.csv"), 0, 4000);
+        log.close();
+
+        assertEquals(1, log.getErrorCount());
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).contains("missing.csv"));
+        assertTrue(log.getSegments(0, Long.MAX_VALUE).isEmpty());
+    }
+
+    private static void writeSegment(SegmentedLog log, long start, long end, String text)
+            throws IOException {
+        write(log.openSegment(start), text);
+        log.closeSegment(end);
+    }
+
+    private static void write(File file, String text) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(text.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String readFirstLine(File segment) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                SegmentedLog.open(segment), "UTF-8"));
+        try {
+            return reader.readLine();
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static String randomLetters(Random random, int count) {
+        StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            builder.append((char) ('a' + random.nextInt(26)));
+        }
+        return builder.toString();
+    }
+
+    private File newDirectory() throws IOException {
+        return mTemporaryFolder.newFolder();
+    }
+}
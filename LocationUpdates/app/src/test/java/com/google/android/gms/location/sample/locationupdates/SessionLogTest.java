@@ -0,0 +1,120 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Round-trips fixes through the binary session log.
+ */
+public class SessionLogTest {
+
+    @Rule
+    public final TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void readsBackWhatWasWritten() throws Exception {
+        File file = mTemporaryFolder.newFile("session.snrl");
+        long start = 1480000000000L;
+        SessionLogWriter writer = new SessionLogWriter(file, start);
+        SatelliteSnapshot snapshot = new SatelliteSnapshot(8);
+        for (int fix = 0; fix < 300; fix++) {
+            snapshot.clear(start + fix * 1000L);
+            if (fix % 2 == 0) {
+                snapshot.setAccuracy(fix / 4f);
+            }
+            snapshot.add(3, 40.5f, 67, 310, true);
+            snapshot.add(17, 22.0f - fix % 3, -2, 5, false);
+            writer.append(snapshot, fix / 10f, fix % 4);
+        }
+        writer.close();
+
+        SessionLogReader reader = new SessionLogReader(file);
+        try {
+            assertEquals(start, reader.getStartTime());
+            assertEquals(300, reader.getRecordCount());
+            assertEquals(start + 123000L, reader.getTimestamp(123));
+            assertEquals(12.3f, reader.getCoefficientOfVariation(123), 1e-6);
+            assertEquals(3, reader.getVerdict(123));
+            assertEquals(200, reader.findRecord(start + 199500L));
+
+            SatelliteSnapshot out = new SatelliteSnapshot(8);
+            reader.read(124, out);
+            assertEquals(31f, out.getAccuracy(), 0);
+            assertEquals(2, out.getCount());
+            assertEquals(1, out.getUsedCount());
+            assertEquals(3, out.getPrn(0));
+            assertEquals(40.5f, out.getSnr(0), 1e-6);
+            assertEquals(67f, out.getElevation(0), 0);
+            assertEquals(310f, out.getAzimuth(0), 0);
+            assertTrue(out.isUsedInFix(0));
+            assertEquals(17, out.getPrn(1));
+            assertEquals(21.0f, out.getSnr(1), 1e-6);
+            assertEquals(-2f, out.getElevation(1), 0);
+            reader.read(125, out);
+            assertTrue(Float.isNaN(out.getAccuracy()));
+
+            StringWriter csv = new StringWriter();
+            reader.exportCsv(csv);
+            assertEquals(1 + 600, csv.toString().split("\n").length);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void ignoresTruncatedLastRecord() throws Exception {
+        File file = mTemporaryFolder.newFile("session.snrl");
+        SessionLogWriter writer = new SessionLogWriter(file, 0);
+        SatelliteSnapshot snapshot = new SatelliteSnapshot(8);
+        for (int fix = 0; fix < 2; fix++) {
+            snapshot.clear(fix);
+            snapshot.add(5, 30, 45, 90, true);
+            writer.append(snapshot, 1, 0);
+        }
+        writer.close();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(raf.length() - 2);
+        raf.close();
+
+        SessionLogReader reader = new SessionLogReader(file);
+        try {
+            assertEquals(1, reader.getRecordCount());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void deletesOldestLogsBeyondTheBudget() throws Exception {
+        File directory = mTemporaryFolder.newFolder();
+        File other = new File(directory, "other.snrl");
+        assertTrue(other.createNewFile());
+        for (int i = 0; i < 5; i++) {
+            // Start times with fewer digits sort by value, not by name.
+            File file = new File(directory, "session-" + (i * 500) + ".snrl");
+            new SessionLogWriter(file, i).close();
+        }
+        long size = SessionLogWriter.HEADER_SIZE;
+
+        assertEquals(0, SessionLogWriter.deleteOldLogs(directory, "session-", ".snrl", 5,
+                5 * size));
+        assertEquals(2, SessionLogWriter.deleteOldLogs(directory, "session-", ".snrl", 3,
+                5 * size));
+        assertFalse(new File(directory, "session-500.snrl").exists());
+        assertTrue(new File(directory, "session-1000.snrl").exists());
+        assertEquals(1, SessionLogWriter.deleteOldLogs(directory, "session-", ".snrl", 3,
+                2 * size));
+        assertEquals(1, SessionLogWriter.deleteOldLogs(directory, "session-", ".snrl", 3, 0));
+        assertTrue(new File(directory, "session-2000.snrl").exists());
+        assertTrue(other.exists());
+    }
+}
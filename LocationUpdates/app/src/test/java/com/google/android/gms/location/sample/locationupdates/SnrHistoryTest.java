@@ -0,0 +1,35 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the per-PRN ring buffers keep the newest samples in order.
+ */
+public class SnrHistoryTest {
+
+    @Test
+    public void keepsNewestSamplesOncePrnWindowWraps() {
+        SnrHistory history = new SnrHistory(32, 3);
+        for (int i = 1; i <= 5; i++) {
+            history.add(7, i);
+        }
+        history.add(8, 40);
+
+        assertEquals(3, history.size(7));
+        assertEquals(3f, history.get(7, 0), 0);
+        assertEquals(5f, history.get(7, 2), 0);
+        assertEquals(1, history.size(8));
+    }
+
+    @Test
+    public void ignoresPrnsOutsideRange() {
+        SnrHistory history = new SnrHistory(32, 3);
+        history.add(0, 10);
+        history.add(65, 10);
+
+        assertEquals(0, history.size(0));
+        assertEquals(0, history.size(65));
+    }
+}
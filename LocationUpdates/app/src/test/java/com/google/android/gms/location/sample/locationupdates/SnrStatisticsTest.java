@@ -0,0 +1,49 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the running statistics against the two-pass formulas they replace.
+ */
+public class SnrStatisticsTest {
+
+    private static final double DELTA = 1e-6;
+
+    @Test
+    public void matchesTwoPassStatistics() {
+        float[] samples = {31.0f, 28.5f, 40.2f, 22.0f, 35.7f, 19.3f};
+        SnrStatistics stats = new SnrStatistics();
+        double sum = 0;
+        for (float sample : samples) {
+            stats.add(sample);
+            sum += sample;
+        }
+        double mean = sum / samples.length;
+        double squares = 0;
+        for (float sample : samples) {
+            squares += (sample - mean) * (sample - mean);
+        }
+        double variance = squares / samples.length;
+
+        assertEquals(samples.length, stats.getCount());
+        assertEquals(mean, stats.getMean(), DELTA);
+        assertEquals(variance, stats.getVariance(), DELTA);
+        assertEquals(Math.sqrt(variance) / mean * 100, stats.getCoefficientOfVariation(), DELTA);
+        assertEquals(19.3f, stats.getMin(), DELTA);
+        assertEquals(40.2f, stats.getMax(), DELTA);
+    }
+
+    @Test
+    public void resetForgetsSamples() {
+        SnrStatistics stats = new SnrStatistics();
+        stats.add(10);
+        stats.add(20);
+        stats.reset();
+
+        assertEquals(0, stats.getCount());
+        assertEquals(0, stats.getVariance(), DELTA);
+        assertEquals(0, stats.getCoefficientOfVariation(), DELTA);
+    }
+}
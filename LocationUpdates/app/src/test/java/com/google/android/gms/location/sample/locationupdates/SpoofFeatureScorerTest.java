@@ -0,0 +1,177 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Scores genuine-looking and simulator-looking skies.
+ */
+public class SpoofFeatureScorerTest {
+
+    /** Empty, so the SNR jitter is left out of the score. */
+    private final SnrHistory mHistory = new SnrHistory(Constellation.MAX_KEY, 60);
+
+    @Test
+    public void genuineSkyScoresLow() {
+        SpoofFeatureScorer scorer = new SpoofFeatureScorer(16);
+        SatelliteSnapshot snapshot = new SatelliteSnapshot(16);
+        snapshot.clear(0);
+        snapshot.add(2, 18, 8, 40, false);
+        snapshot.add(5, 26, 25, 120, true);
+        snapshot.add(12, 33, 48, 200, true);
+        snapshot.add(25, 41, 75, 300, true);
+        snapshot.add(40, 20, 30, 10, false);
+
+        float score = scorer.score(snapshot, mHistory);
+
+        assertTrue(scorer.getCorrelation(Constellation.GPS) > 0.9f);
+        assertTrue(scorer.getSpread(Constellation.GPS) > SpoofFeatureScorer.GENUINE_SPREAD);
+        assertEquals(0f, score, 1e-6);
+    }
+
+    @Test
+    public void flatUncorrelatedSkyScoresHigh() {
+        SpoofFeatureScorer scorer = new SpoofFeatureScorer(16);
+        SatelliteSnapshot snapshot = new SatelliteSnapshot(16);
+        snapshot.clear(0);
+        snapshot.add(2, 45, 8, 40, true);
+        snapshot.add(5, 44, 25, 120, true);
+        snapshot.add(12, 45, 48, 200, true);
+        snapshot.add(25, 44, 75, 300, true);
+
+        float score = scorer.score(snapshot, mHistory);
+
+        assertTrue(scorer.getCorrelation(Constellation.GPS) < 0.1f);
+        assertTrue(score > 0.9f);
+    }
+
+    @Test
+    public void flatGpsStandsOutAgainstGenuineConstellations() {
+        SpoofFeatureScorer scorer = new SpoofFeatureScorer(16);
+        SatelliteSnapshot snapshot = new SatelliteSnapshot(16);
+        snapshot.clear(0);
+        snapshot.add(2, 45, 8, 40, true);
+        snapshot.add(5, 44, 25, 120, true);
+        snapshot.add(12, 45, 48, 200, true);
+        snapshot.add(25, 44, 75, 300, true);
+        snapshot.add(66, 20, 10, 60, true);
+        snapshot.add(71, 31, 40, 150, true);
+        snapshot.add(80, 38, 70, 250, true);
+        snapshot.add(305, 22, 15, 330, true);
+        snapshot.add(311, 30, 35, 100, true);
+        snapshot.add(319, 39, 80, 210, true);
+
+        float score = scorer.score(snapshot, mHistory);
+
+        assertEquals(Constellation.GPS, scorer.getWorstConstellation());
+        assertEquals(0f, scorer.getSkyScore(Constellation.GLONASS), 1e-6);
+        assertEquals(0f, scorer.getSkyScore(Constellation.GALILEO), 1e-6);
+        assertEquals(1f, scorer.getContrast(), 1e-6);
+        assertTrue(score > 0.9f);
+    }
+
+    @Test
+    public void genuineConstellationsDoNotContrast() {
+        SpoofFeatureScorer scorer = new SpoofFeatureScorer(16);
+        SatelliteSnapshot snapshot = new SatelliteSnapshot(16);
+        snapshot.clear(0);
+        snapshot.add(2, 18, 8, 40, true);
+        snapshot.add(5, 26, 25, 120, true);
+        snapshot.add(12, 33, 48, 200, true);
+        snapshot.add(25, 41, 75, 300, true);
+        snapshot.add(66, 20, 10, 60, true);
+        snapshot.add(71, 31, 40, 150, true);
+        snapshot.add(80, 38, 70, 250, true);
+
+        float score = scorer.score(snapshot, mHistory);
+
+        assertEquals(0f, scorer.getContrast(), 1e-6);
+        assertEquals(0f, score, 1e-6);
+    }
+
+    @Test
+    public void steadySnrHistoryRaisesTheScore() {
+        SpoofFeatureScorer scorer = new SpoofFeatureScorer(16);
+        SatelliteSnapshot snapshot = genuineGpsSky();
+        SnrHistory history = new SnrHistory(Constellation.MAX_KEY, 60);
+        addHistory(history, snapshot, SpoofFeatureScorer.MIN_JITTER_SAMPLES - 1, 0);
+
+        assertEquals(0f, scorer.score(snapshot, history), 1e-6);
+        assertTrue(Float.isNaN(scorer.getJitter()));
+
+        addHistory(history, snapshot, 1, 0);
+        float score = scorer.score(snapshot, history);
+
+        assertEquals(0f, scorer.getJitter(), 1e-6);
+        assertTrue(score > 0.2f);
+    }
+
+    @Test
+    public void fadingSnrHistoryKeepsTheScoreLow() {
+        SpoofFeatureScorer scorer = new SpoofFeatureScorer(16);
+        SatelliteSnapshot snapshot = genuineGpsSky();
+        SnrHistory history = new SnrHistory(Constellation.MAX_KEY, 60);
+        // Old steady samples fall out of the window.
+        addHistory(history, snapshot, 30, 0);
+        addHistory(history, snapshot, SpoofFeatureScorer.JITTER_WINDOW, 2);
+
+        float score = scorer.score(snapshot, history);
+
+        assertEquals(2f, scorer.getJitter(), 1e-4);
+        assertEquals(0f, score, 1e-6);
+    }
+
+    @Test
+    public void accuracyTrendNeedsThreeLocations() {
+        SpoofFeatureScorer scorer = new SpoofFeatureScorer(16);
+        SatelliteSnapshot snapshot = new SatelliteSnapshot(16);
+        for (int i = 0; i < 3; i++) {
+            scorer.addAccuracy(i * 1000L, 10 + 10 * i);
+            snapshot.clear(i * 1000L + 500);
+            assertEquals(i < 2 ? 0f : 1f, scorer.score(snapshot, mHistory), 0);
+            assertEquals(i < 2, Float.isNaN(scorer.getAccuracySlope()));
+        }
+        assertEquals(10f, scorer.getAccuracySlope(), 1e-4);
+    }
+
+    @Test
+    public void improvingAccuracyIsNotSuspicious() {
+        SpoofFeatureScorer scorer = new SpoofFeatureScorer(16);
+        SatelliteSnapshot snapshot = new SatelliteSnapshot(16);
+        for (int i = 0; i < 3; i++) {
+            scorer.addAccuracy(i * 1000L, 50 - 10 * i);
+        }
+        // Fixes between locations do not add samples to the trend.
+        for (int i = 0; i < 5; i++) {
+            snapshot.clear(2000 + i * 1000L);
+            assertEquals(0f, scorer.score(snapshot, mHistory), 0);
+        }
+        assertEquals(-10f, scorer.getAccuracySlope(), 1e-4);
+    }
+
+    private static SatelliteSnapshot genuineGpsSky() {
+        SatelliteSnapshot snapshot = new SatelliteSnapshot(16);
+        snapshot.clear(0);
+        snapshot.add(2, 18, 8, 40, false);
+        snapshot.add(5, 26, 25, 120, true);
+        snapshot.add(12, 33, 48, 200, true);
+        snapshot.add(25, 41, 75, 300, true);
+        return snapshot;
+    }
+
+    /**
+     * Adds {@code count} samples per satellite of {@code snapshot} that alternate by
+     * {@code swing} dB-Hz around its SNR.
+     */
+    private static void addHistory(SnrHistory history, SatelliteSnapshot snapshot, int count,
+            float swing) {
+        for (int k = 0; k < count; k++) {
+            for (int i = 0; i < snapshot.getCount(); i++) {
+                float offset = k % 2 == 0 ? swing : -swing;
+                history.add(snapshot.getKey(i), snapshot.getSnr(i) + offset);
+            }
+        }
+    }
+}
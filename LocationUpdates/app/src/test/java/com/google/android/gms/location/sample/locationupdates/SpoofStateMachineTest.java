@@ -0,0 +1,76 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Walks the detector through a spoofing episode and back.
+ */
+public class SpoofStateMachineTest {
+
+    private static final double CLEAN_CV = 20;
+    private static final double SUSPICIOUS_CV = 7;
+
+    @Test
+    public void detectsSpoofingAndRecoversWithHysteresis() {
+        SpoofStateMachine detector = new SpoofStateMachine(20);
+
+        feed(detector, CLEAN_CV, 19);
+        assertEquals(SpoofStateMachine.STATE_WARMUP, detector.getState());
+        feed(detector, CLEAN_CV, 1);
+        assertEquals(SpoofStateMachine.STATE_NORMAL, detector.getState());
+
+        feed(detector, SUSPICIOUS_CV, 4);
+        assertEquals(SpoofStateMachine.STATE_NORMAL, detector.getState());
+        feed(detector, SUSPICIOUS_CV, 1);
+        assertEquals(SpoofStateMachine.STATE_SUSPECT, detector.getState());
+        feed(detector, SUSPICIOUS_CV, 5);
+        assertEquals(SpoofStateMachine.STATE_SPOOFED, detector.getState());
+
+        // 10 suspicious fixes in the window; SPOOFED holds until at most 2 are left.
+        feed(detector, CLEAN_CV, 17);
+        assertEquals(SpoofStateMachine.STATE_SPOOFED, detector.getState());
+        feed(detector, CLEAN_CV, 1);
+        assertEquals(SpoofStateMachine.STATE_RECOVERING, detector.getState());
+        feed(detector, CLEAN_CV, 18);
+        assertEquals(SpoofStateMachine.STATE_RECOVERING, detector.getState());
+        feed(detector, CLEAN_CV, 1);
+        assertEquals(SpoofStateMachine.STATE_NORMAL, detector.getState());
+        assertEquals(0, detector.getSuspiciousCount());
+    }
+
+    @Test
+    public void fallsBackToSpoofedWhileRecovering() {
+        SpoofStateMachine detector = new SpoofStateMachine(20);
+        feed(detector, SUSPICIOUS_CV, 20);
+        assertEquals(SpoofStateMachine.STATE_SPOOFED, feedAndGet(detector, SUSPICIOUS_CV));
+        feed(detector, CLEAN_CV, 18);
+        assertEquals(SpoofStateMachine.STATE_RECOVERING, detector.getState());
+
+        // The first two replace the suspicious fixes still in the window.
+        feed(detector, SUSPICIOUS_CV, 4);
+        assertEquals(SpoofStateMachine.STATE_RECOVERING, detector.getState());
+        feed(detector, SUSPICIOUS_CV, 1);
+        assertEquals(SpoofStateMachine.STATE_SPOOFED, detector.getState());
+    }
+
+    @Test
+    public void bandExcludesUpperBound() {
+        SpoofStateMachine detector = new SpoofStateMachine(20);
+        assertEquals(true, detector.isSuspicious(5));
+        assertEquals(false, detector.isSuspicious(10));
+        detector.setSuspiciousBand(2, 4);
+        assertEquals(false, detector.isSuspicious(5));
+    }
+
+    private static void feed(SpoofStateMachine detector, double cv, int fixes) {
+        for (int i = 0; i < fixes; i++) {
+            detector.update(cv);
+        }
+    }
+
+    private static int feedAndGet(SpoofStateMachine detector, double cv) {
+        return detector.update(cv);
+    }
+}
@@ -0,0 +1,47 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Formats and commits widget texts.
+ */
+public class TextBufferTest {
+
+    @Test
+    public void formatsLikeStringFormat() {
+        TextBuffer buffer = new TextBuffer(4);
+        double[] values = {0, 1.5, -0.25, 103.8198, -33.8688197, 1.0000005};
+        for (double value : values) {
+            buffer.begin().append("Lat").append(": ").append(value, 6).commit();
+            assertEquals(String.format(Locale.US, "Lat: %f", value), buffer.toString());
+        }
+        buffer.begin().append(-42L).append(' ').append(12.34f, 1).append(" (")
+                .append((String) null).append(')').commit();
+        assertEquals("-42 12.3 (null)", buffer.toString());
+    }
+
+    @Test
+    public void commitsOnlyChanges() {
+        TextBuffer buffer = new TextBuffer(16);
+        assertTrue(buffer.begin().append(12).commit());
+        char[] shown = buffer.getChars();
+        assertFalse(buffer.begin().append(12).commit());
+        assertSame(shown, buffer.getChars());
+        assertEquals("12", buffer.toString());
+
+        assertTrue(buffer.begin().append(13).commit());
+        assertNotSame(shown, buffer.getChars());
+        assertEquals("13", buffer.toString());
+
+        buffer.invalidate();
+        assertTrue(buffer.begin().append(13).commit());
+    }
+}
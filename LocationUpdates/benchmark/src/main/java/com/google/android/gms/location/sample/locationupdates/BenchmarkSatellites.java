@@ -0,0 +1,44 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import java.util.Random;
+
+/**
+ * Synthetic satellite sets for the benchmarks.
+ */
+final class BenchmarkSatellites {
+
+    private BenchmarkSatellites() {
+    }
+
+    /**
+     * Satellites taken from each constellation in turn: GPS, GLONASS, Galileo, then BeiDou.
+     */
+    private static final int[] CONSTELLATIONS = {
+            Constellation.GPS, Constellation.GLONASS, Constellation.GALILEO, Constellation.BEIDOU
+    };
+    private static final int[] SIZES = { 32, 24, 36, 63 };
+
+    /**
+     * Fills a snapshot with {@code count} satellites, up to 155. The first 32 are GPS, followed by
+     * GLONASS, Galileo and BeiDou satellites, and the values are seeded so every run sees the same
+     * sky.
+     */
+    static SatelliteSnapshot create(int count) {
+        Random random = new Random(count);
+        SatelliteSnapshot snapshot = new SatelliteSnapshot(count);
+        snapshot.clear(1480000000000L);
+        int constellation = 0;
+        int svid = 1;
+        for (int i = 0; i < count; i++) {
+            if (svid > SIZES[constellation]) {
+                constellation++;
+                svid = 1;
+            }
+            int prn = Constellation.prn(CONSTELLATIONS[constellation], svid++);
+            float elevation = 5 + random.nextInt(85);
+            snapshot.add(prn, 15 + elevation / 4 + random.nextInt(100) / 10f, elevation,
+                    random.nextInt(360), random.nextBoolean());
+        }
+        return snapshot;
+    }
+}
@@ -0,0 +1,87 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the per-fix work done on the processing thread.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FixAnalysisBenchmark {
+
+    @Param({"8", "16", "32", "64", "128"})
+    public int satellites;
+
+    private SatelliteSnapshot mSnapshot;
+    private FixAnalyzer mAnalyzer;
+    private final FixResult mResult = new FixResult();
+    private final SnrStatistics mStatistics = new SnrStatistics();
+    private final PrnTableModel mPrnTable = new PrnTableModel(Constellation.MAX_KEY);
+    private SatelliteSnapshot mNextSnapshot;
+    private boolean mFlip;
+
+    @Setup
+    public void setUp() {
+        mSnapshot = BenchmarkSatellites.create(satellites);
+        mAnalyzer = new FixAnalyzer(120);
+        mPrnTable.setSortOrder(PrnTableModel.SORT_BY_SNR);
+        mNextSnapshot = new SatelliteSnapshot(satellites);
+        mNextSnapshot.clear(mSnapshot.getTimestamp() + 1000);
+        for (int i = 0; i < mSnapshot.getCount(); i++) {
+            // Every other satellite changes SNR between the two fixes.
+            mNextSnapshot.add(mSnapshot.getPrn(i), mSnapshot.getSnr(i) + (i % 2) * 0.5f,
+                    mSnapshot.getElevation(i), mSnapshot.getAzimuth(i), mSnapshot.isUsedInFix(i));
+        }
+    }
+
+    /**
+     * SNR statistics of the GPS satellites of one fix.
+     */
+    @Benchmark
+    public double statistics() {
+        mStatistics.reset();
+        for (int i = 0; i < mSnapshot.getCount(); i++) {
+            if (mSnapshot.getConstellation(i) == Constellation.GPS) {
+                mStatistics.add(mSnapshot.getSnr(i));
+            }
+        }
+        return mStatistics.getCoefficientOfVariation();
+    }
+
+    /**
+     * The whole analysis of one fix: history, statistics, feature score and spoof classification.
+     */
+    @Benchmark
+    public int analyzeFix() {
+        mAnalyzer.analyze(mSnapshot, mResult);
+        return mResult.verdict;
+    }
+
+    /**
+     * The PRN table shown in the UI, sorted by SNR, alternating between two fixes that differ in
+     * half the rows.
+     */
+    @Benchmark
+    public int prnTable() {
+        mFlip = !mFlip;
+        mPrnTable.update(mFlip ? mNextSnapshot : mSnapshot);
+        mPrnTable.markApplied();
+        return mPrnTable.getRowCount();
+    }
+}
@@ -0,0 +1,36 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of formatting the CSV line logged for every fix.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogFormatBenchmark {
+
+    private final StringBuilder mLine = new StringBuilder(32);
+    private double mCoefficientOfVariation = 7.318;
+    private int mSecond = 0;
+
+    @Benchmark
+    public String coefficientOfVariationLine() {
+        mSecond = (mSecond + 1) % 60;
+        return CsvLogWriter.formatCoefficientOfVariation(mLine, mCoefficientOfVariation, 10, 42,
+                mSecond);
+    }
+}
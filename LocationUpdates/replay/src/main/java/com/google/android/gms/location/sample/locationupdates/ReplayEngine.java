@@ -0,0 +1,157 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Headless replay of recorded session logs through the spoof detector.
+ *
+ * Every fix of a {@link SessionLogReader} is decoded and run through a fresh {@link FixAnalyzer}
+ * as fast as possible, the same analysis the app runs on its processing thread. The report
+ * counts the replayed verdicts (detector states), how many differ from the recorded ones, and the
+ * throughput and per-fix latency of the analysis. Logs hold the accuracy of the latest location
+ * with every fix rather than the locations themselves, so a new location is assumed, at the time
+ * of the fix, wherever the recorded accuracy changes.
+ */
+public class ReplayEngine {
+
+    private static final int MAX_SATELLITES = 256;
+
+    /**
+     * Detector settings used by the app, see {@code MainActivity}.
+     */
+    private static final int DEFAULT_HISTORY_SIZE = 120;
+
+    private final int mHistorySize;
+    private final SatelliteSnapshot mSnapshot = new SatelliteSnapshot(MAX_SATELLITES);
+    private final FixResult mResult = new FixResult();
+
+    /**
+     * Result of replaying one session log.
+     */
+    public static class Report {
+        public int fixes;
+        public final int[] verdictCounts = new int[SpoofStateMachine.STATE_COUNT];
+        public int verdictMismatches;
+        public long elapsedNanos;
+        public long medianLatencyNanos;
+        public long p99LatencyNanos;
+        public long maxLatencyNanos;
+
+        public double getFixesPerSecond() {
+            return elapsedNanos == 0 ? 0 : fixes * 1e9 / elapsedNanos;
+        }
+
+        public void print(PrintStream out) {
+            out.println("fixes: " + fixes);
+            for (int state = 0; state < verdictCounts.length; state++) {
+                out.println(SpoofStateMachine.getStateName(state) + ": " + verdictCounts[state]);
+            }
+            out.println("differing from recorded verdict: " + verdictMismatches);
+            out.println(String.format("throughput: %.0f fixes/s", getFixesPerSecond()));
+            out.println(String.format("latency: p50 %.1f us, p99 %.1f us, max %.1f us",
+                    medianLatencyNanos / 1e3, p99LatencyNanos / 1e3, maxLatencyNanos / 1e3));
+        }
+    }
+
+    /**
+     * @param historySize number of recent SNR samples kept per satellite, as in the app
+     */
+    public ReplayEngine(int historySize) {
+        mHistorySize = historySize;
+    }
+
+    /**
+     * Replays every fix of {@code log}.
+     *
+     * @param verdicts if not null, receives one CSV line per fix: timestamp, recorded verdict,
+     *                 replayed verdict and coefficient of variation
+     */
+    public Report replay(SessionLogReader log, Writer verdicts) throws IOException {
+        FixAnalyzer analyzer = new FixAnalyzer(mHistorySize);
+        Report report = new Report();
+        int count = log.getRecordCount();
+        long[] latencies = new long[count];
+        StringBuilder line = new StringBuilder(64);
+        float accuracy = Float.NaN;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            log.read(i, mSnapshot);
+            long before = System.nanoTime();
+            if (Float.compare(mSnapshot.getAccuracy(), accuracy) != 0) {
+                accuracy = mSnapshot.getAccuracy();
+                analyzer.addLocation(mSnapshot.getTimestamp(), accuracy);
+            }
+            analyzer.analyze(mSnapshot, mResult);
+            latencies[i] = System.nanoTime() - before;
+
+            int verdict = mResult.verdict;
+            if (verdict >= 0 && verdict < report.verdictCounts.length) {
+                report.verdictCounts[verdict]++;
+            }
+            if (verdict != log.getVerdict(i)) {
+                report.verdictMismatches++;
+            }
+            if (verdicts != null) {
+                line.setLength(0);
+                line.append(log.getTimestamp(i)).append(',')
+                        .append(log.getVerdict(i)).append(',')
+                        .append(verdict).append(',')
+                        .append(mResult.coefficientOfVariation).append('\n');
+                verdicts.write(line.toString());
+            }
+        }
+        report.elapsedNanos = System.nanoTime() - start;
+        report.fixes = count;
+
+        if (count > 0) {
+            Arrays.sort(latencies);
+            report.medianLatencyNanos = latencies[count / 2];
+            report.p99LatencyNanos = latencies[Math.min(count - 1, (int) (count * 0.99))];
+            report.maxLatencyNanos = latencies[count - 1];
+        }
+        if (verdicts != null) {
+            verdicts.flush();
+        }
+        return report;
+    }
+
+    /**
+     * Replays the session logs given as arguments and prints a report for each. Options:
+     * {@code --verdicts} also prints the per-fix verdicts and {@code --history N} overrides the
+     * detector setting, which defaults to the app's.
+     */
+    public static void main(String[] args) throws IOException {
+        int historySize = DEFAULT_HISTORY_SIZE;
+        boolean printVerdicts = false;
+        int i = 0;
+        for (; i < args.length && args[i].startsWith("--"); i++) {
+            if ("--verdicts".equals(args[i])) {
+                printVerdicts = true;
+            } else if ("--history".equals(args[i]) && i + 1 < args.length) {
+                historySize = Integer.parseInt(args[++i]);
+            } else {
+                System.err.println("Unknown option " + args[i]);
+                System.exit(2);
+            }
+        }
+
+        ReplayEngine engine = new ReplayEngine(historySize);
+        for (; i < args.length; i++) {
+            SessionLogReader log = new SessionLogReader(new File(args[i]));
+            try {
+                System.out.println(args[i]);
+                Report report = engine.replay(log,
+                        printVerdicts ? new PrintWriter(System.out) : null);
+                report.print(System.out);
+            } finally {
+                log.close();
+            }
+        }
+    }
+}